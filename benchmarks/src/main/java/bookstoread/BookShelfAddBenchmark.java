@@ -0,0 +1,51 @@
+package bookstoread;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills an empty shelf with pre-built books, so the score is the cost of {@code add} and of
+ * the indexes it maintains, not of creating books. Every invocation gets fresh copies of the
+ * books, so listeners of earlier shelves do not pile up on them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BookShelfAddBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    private Book[] catalog;
+    private Book[] books;
+
+    @Setup
+    public void setUp() {
+        catalog = Catalogs.books(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void copyBooks() {
+        books = Catalogs.copy(catalog);
+    }
+
+    @Benchmark
+    public BookShelf addAll() {
+        BookShelf shelf = new BookShelf();
+        shelf.add(books);
+        return shelf;
+    }
+
+    @Benchmark
+    public BookShelf addOneByOne() {
+        BookShelf shelf = new BookShelf();
+        for (Book book : books) {
+            shelf.add(book);
+        }
+        return shelf;
+    }
+}
@@ -0,0 +1,80 @@
+package bookstoread;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Queries on a shelf that is built once per trial. The shelf reuses groupings until it
+ * changes, so the grouping benchmarks defeat that: {@code groupByAuthor} passes a new
+ * classifier every time and {@code groupByPublicationYear} adds and removes a spare book
+ * before each invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BookShelfQueryBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    private BookShelf shelf;
+    private String title;
+    private final Book spare = new Book("Spare", "Spare", null);
+
+    @Setup
+    public void setUp() {
+        Book[] books = Catalogs.books(size);
+        shelf = Catalogs.shelf(books);
+        title = books[size / 2].getTitle().substring(0, 5).toLowerCase();
+    }
+
+    /**
+     * Publishes a new version of the shelf with the same books.
+     */
+    @State(Scope.Thread)
+    public static class Changed {
+        @Setup(Level.Invocation)
+        public void change(BookShelfQueryBenchmark benchmark) {
+            benchmark.shelf.add(benchmark.spare);
+            benchmark.shelf.remove(benchmark.spare);
+        }
+    }
+
+    @Benchmark
+    public List<Book> arrange() {
+        return shelf.arrange();
+    }
+
+    @Benchmark
+    public Map<Year, List<Book>> groupByPublicationYear(Changed changed) {
+        return shelf.groupByPublicationYear();
+    }
+
+    @Benchmark
+    public Map<String, List<Book>> groupByAuthor() {
+        return shelf.groupBy(new Function<Book, String>() {
+            @Override
+            public String apply(Book book) {
+                return book.getAuthor();
+            }
+        });
+    }
+
+    @Benchmark
+    public Progress progress() {
+        return shelf.progress();
+    }
+
+    @Benchmark
+    public List<Book> findBooksByTitle() {
+        return shelf.findBooksByTitle(title);
+    }
+}
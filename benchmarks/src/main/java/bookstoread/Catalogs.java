@@ -0,0 +1,70 @@
+package bookstoread;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Generates reproducible catalogs for the benchmarks: titles made of a few hundred words,
+ * a thousand authors, publication dates over a century and about a third of the books
+ * started or read.
+ */
+class Catalogs {
+
+    private static final String[] WORDS = words(400);
+    private static final long FIRST_DAY = LocalDate.of(1920, 1, 1).toEpochDay();
+    private static final int DAYS = 100 * 365;
+
+    private Catalogs() {
+    }
+
+    static Book[] books(int size) {
+        Random random = new Random(42);
+        Book[] books = new Book[size];
+        for (int i = 0; i < size; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            String author = "Author " + random.nextInt(1000);
+            Book book = new Book(title, author, LocalDate.ofEpochDay(FIRST_DAY + random.nextInt(DAYS)));
+            int state = random.nextInt(3);
+            if (state > 0) {
+                book.startedReadingOn(LocalDate.of(2016, 1, 1).plusDays(random.nextInt(365)));
+            }
+            if (state > 1) {
+                book.finishedReadingOn(LocalDate.of(2017, 1, 1).plusDays(random.nextInt(365)));
+            }
+            books[i] = book;
+        }
+        return books;
+    }
+
+    /**
+     * Returns new books equal to {@code books}, with the same reading dates.
+     */
+    static Book[] copy(Book[] books) {
+        Book[] copies = new Book[books.length];
+        for (int i = 0; i < books.length; i++) {
+            Book book = books[i];
+            copies[i] = new Book(book.getTitle(), book.getAuthor(), book.getPublishedOn());
+            copies[i].restoreReadingDays(book.startedDay(), book.finishedDay());
+        }
+        return copies;
+    }
+
+    static BookShelf shelf(Book[] books) {
+        BookShelf shelf = new BookShelf();
+        shelf.add(books);
+        return shelf;
+    }
+
+    private static String[] words(int count) {
+        Random random = new Random(7);
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            char[] word = new char[3 + random.nextInt(7)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,49 @@
+package bookstoread;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies composite filters to every book of a catalog. The cheap year check rejects most
+ * books, so the composite should learn to run it first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CompositeFilterBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    private Book[] books;
+    private BookFilter allOf;
+    private BookFilter anyOf;
+
+    @Setup
+    public void setUp() {
+        books = Catalogs.books(size);
+        BookFilter titled = book -> book.getTitle().toLowerCase().contains("ab");
+        BookFilter recent = BookPublishedYearFilter.After(2010);
+        allOf = CompositeFilter.allOf(titled, recent);
+        anyOf = CompositeFilter.anyOf(titled, recent);
+    }
+
+    @Benchmark
+    public void allOf(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(allOf.apply(book));
+        }
+    }
+
+    @Benchmark
+    public void anyOf(Blackhole blackhole) {
+        for (Book book : books) {
+            blackhole.consume(anyOf.apply(book));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bookstoread;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Mutations logged by a durable shelf, including the group commits running behind them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DurableBookShelfBenchmark {
+
+    private static final int BOOKS = 1 << 20;
+
+    private Path directory;
+    private DurableBookShelf durable;
+    private Book[] books;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bookshelf-benchmark");
+        durable = DurableBookShelf.open(directory);
+        books = Catalogs.books(BOOKS);
+        durable.add(Arrays.copyOf(books, 1024));
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        durable.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        durable.add(books[next++ & (BOOKS - 1)]);
+    }
+
+    @Benchmark
+    public void startedReadingOn() {
+        int i = next++;
+        books[i & 1023].startedReadingOn(LocalDate.ofEpochDay(17000 + (i >>> 10 & 255)));
+    }
+}
@@ -0,0 +1,232 @@
+package bookstoread;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Non-blocking facade over a {@link BookShelf}. Every call returns a
+ * {@link CompletableFuture} and runs on an executor, by default on virtual threads when
+ * the runtime has them and on the common fork-join pool otherwise.
+ * <p>
+ * A shelf has a single writer and its query caches are not thread-safe, so the facade
+ * owns its shelf: calls run one at a time in the order they were made, and the shelf must
+ * not be used directly while the facade is in use. No thread waits for its turn; pending
+ * calls are queued and drained by whichever executor thread runs the lane.
+ * <p>
+ * A query made while an identical one is still pending shares its future instead of
+ * running again. Queries are identical when they have the same operation and equal
+ * arguments; comparators, classifiers and filters usually compare by identity. Each write
+ * starts a new epoch once it is queued and a query is only shared within the epoch it was
+ * made in, so a query always sees the writes made before it. Shared results are read-only.
+ */
+public class AsyncBookShelf {
+
+    private static final int BATCH = 64;
+
+    private final BookShelf shelf;
+    private final Executor executor;
+    private final Queue<Runnable> lane = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Map<Query, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    public AsyncBookShelf(BookShelf shelf) {
+        this(shelf, DefaultExecutor.INSTANCE);
+    }
+
+    public AsyncBookShelf(BookShelf shelf, Executor executor) {
+        this.shelf = shelf;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> add(Book... booksToAdd) {
+        Book[] books = booksToAdd.clone();
+        return call(shelf -> {
+            shelf.add(books);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Integer> remove(Book... booksToRemove) {
+        Book[] books = booksToRemove.clone();
+        return call(shelf -> shelf.remove(books));
+    }
+
+    /**
+     * Runs {@code operation} on the shelf in turn with every other call. Calls made this
+     * way are treated as writes and never shared.
+     */
+    public <T> CompletableFuture<T> call(Function<BookShelf, T> operation) {
+        try {
+            return submit(operation);
+        } finally {
+            epoch.incrementAndGet();
+        }
+    }
+
+    public CompletableFuture<List<Book>> arrange() {
+        return arrange(Comparator.naturalOrder());
+    }
+
+    public CompletableFuture<List<Book>> arrange(Comparator<Book> comparator) {
+        return query(new Query("arrange", comparator), shelf -> Collections.unmodifiableList(shelf.arrange(comparator)));
+    }
+
+    public <K> CompletableFuture<Map<K, List<Book>>> groupBy(Function<Book, K> fx) {
+        return query(new Query("groupBy", fx), shelf -> shelf.groupBy(fx));
+    }
+
+    public CompletableFuture<Progress> progress() {
+        return query(new Query("progress"), BookShelf::progress);
+    }
+
+    public CompletableFuture<List<Book>> findBooksByTitle(String title) {
+        return query(new Query("findBooksByTitle", title), shelf -> Collections.unmodifiableList(shelf.findBooksByTitle(title)));
+    }
+
+    public CompletableFuture<List<Book>> findBooksByTitle(String title, BookFilter filter) {
+        return query(new Query("findBooksByTitle", title, filter), shelf -> Collections.unmodifiableList(shelf.findBooksByTitle(title, filter)));
+    }
+
+    /**
+     * Number of distinct queries that are queued or running, including ones a write has
+     * since stopped from being shared.
+     */
+    int pendingQueries() {
+        return pending.size();
+    }
+
+    /**
+     * Shares the pending query made in the current epoch, or queues a new one. The epoch is
+     * read before the query is queued and only moves on after a write is queued, so a query
+     * of the current epoch is queued after every write made before it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> query(Query query, Function<BookShelf, T> operation) {
+        long current = epoch.get();
+        Pending created = new Pending(current, new CompletableFuture<T>());
+        Pending shared = pending.merge(query, created, (old, replacement) -> old.epoch == current ? old : replacement);
+        if (shared != created) {
+            return (CompletableFuture<T>) shared.future;
+        }
+        created.future.whenComplete((result, failure) -> pending.remove(query, created));
+        return submit(operation, (CompletableFuture<T>) created.future);
+    }
+
+    private <T> CompletableFuture<T> submit(Function<BookShelf, T> operation) {
+        return submit(operation, new CompletableFuture<>());
+    }
+
+    private <T> CompletableFuture<T> submit(Function<BookShelf, T> operation, CompletableFuture<T> result) {
+        Runnable task = () -> {
+            try {
+                result.complete(operation.apply(shelf));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        };
+        lane.add(task);
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            lane.remove(task);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private void schedule() {
+        if (!lane.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs up to {@link #BATCH} queued calls and hands the rest of the lane back to the
+     * executor, so one busy shelf does not hold an executor thread indefinitely.
+     */
+    private void drain() {
+        try {
+            Runnable task;
+            for (int i = 0; i < BATCH && (task = lane.poll()) != null; i++) {
+                task.run();
+            }
+        } finally {
+            draining.set(false);
+            schedule();
+        }
+    }
+
+    private static class Pending {
+        private final long epoch;
+        private final CompletableFuture<?> future;
+
+        Pending(long epoch, CompletableFuture<?> future) {
+            this.epoch = epoch;
+            this.future = future;
+        }
+    }
+
+    private static class Query {
+        private final String operation;
+        private final Object[] arguments;
+
+        Query(String operation, Object... arguments) {
+            this.operation = operation;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query query = (Query) o;
+            return operation.equals(query.operation) && Arrays.equals(arguments, query.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operation.hashCode() + Arrays.hashCode(arguments);
+        }
+    }
+
+    /**
+     * Virtual threads are looked up reflectively, so the class still runs on runtimes
+     * without them.
+     */
+    static class DefaultExecutor {
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (Executor) factory.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return ForkJoinPool.commonPool();
+            }
+        }
+    }
+}
@@ -1,18 +1,49 @@
 package bookstoread;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 
+/**
+ * Dates are held as epoch days rather than {@link LocalDate} objects, which keeps a book
+ * at a handful of words on the heap. {@link #getPublishedOn()} creates the date on demand.
+ * Epoch days that do not fit an int, such as those of {@link LocalDate#MIN} and
+ * {@link LocalDate#MAX}, are held as {@link #FAR_DAY}; a publication date that far is kept
+ * as a {@link LocalDate} as well. Reading dates are only seen through the reading state, so
+ * for them {@link #FAR_DAY} is enough.
+ * <p>
+ * Title, author and publication date never change, so the hash code and a sort key made of
+ * the first title characters are computed once. Most title comparisons are decided by that
+ * key without touching the strings.
+ * <p>
+ * Both reading dates are packed into one volatile long, so a reader never sees one date of
+ * a transition without the other. A transition changes it under the book's monitor and
+ * takes the listeners to tell in the same step, so a listener is told about exactly the
+ * transitions made after the reading days its registration returned. Listeners are told
+ * after the monitor is released, with the states before and after the transition.
+ */
 public class Book implements Comparable<Book> {
+    static final long NO_DATE = Long.MIN_VALUE;
+    static final int NO_DAY = Integer.MIN_VALUE;
+    static final int FAR_DAY = Integer.MIN_VALUE + 1;
+
+    private static final ReadingStateListener[] NO_LISTENERS = {};
+
     private final String title;
     private final String author;
-    private final LocalDate publishedOn;
-    private LocalDate startedReadingOn;
-    private LocalDate finishedReadingOn;
+    private final int publishedOn;
+    private final LocalDate farPublishedOn;
+    private final int hash;
+    private final long titleKey;
+    private volatile long readingDays = readingDays(NO_DAY, NO_DAY);
+    private volatile ReadingStateListener[] listeners = NO_LISTENERS;
 
     public Book(String title, String author, LocalDate publishedOn) {
         this.title = title;
         this.author = author;
-        this.publishedOn = publishedOn;
+        this.publishedOn = toDay(publishedOn);
+        this.farPublishedOn = this.publishedOn == FAR_DAY ? publishedOn : null;
+        this.hash = hash(title, author, this.publishedOn, farPublishedOn);
+        this.titleKey = titleKey(title);
     }
 
     public String getTitle() {
@@ -24,23 +55,200 @@ public class Book implements Comparable<Book> {
     }
 
     public LocalDate getPublishedOn() {
+        return publishedOn == FAR_DAY ? farPublishedOn : toDate(publishedOn);
+    }
+
+    /**
+     * The publication epoch day, {@link #FAR_DAY} if it does not fit an int; see
+     * {@link #publishedEpochDay()}.
+     */
+    int publishedDay() {
         return publishedOn;
     }
 
+    long publishedEpochDay() {
+        if (publishedOn == FAR_DAY) {
+            return farPublishedOn.toEpochDay();
+        }
+        return publishedOn == NO_DAY ? NO_DATE : publishedOn;
+    }
+
     public boolean isRead() {
-        return startedReadingOn != null && finishedReadingOn != null;
+        return stateOf(readingDays) == ReadingState.READ;
     }
 
     public boolean isProgress() {
-        return startedReadingOn != null && finishedReadingOn == null;
+        return stateOf(readingDays) == ReadingState.IN_PROGRESS;
     }
 
     public void startedReadingOn(LocalDate startedOn) {
-        this.startedReadingOn = startedOn;
+        int day = toDay(startedOn);
+        long before;
+        long after;
+        ReadingStateListener[] listeners;
+        synchronized (this) {
+            before = readingDays;
+            if (startedDay(before) == day) {
+                return;
+            }
+            after = readingDays(day, finishedDay(before));
+            readingDays = after;
+            listeners = this.listeners;
+        }
+        readingStateChanged(listeners, before, after);
     }
 
     public void finishedReadingOn(LocalDate finishedOn) {
-        this.finishedReadingOn = finishedOn;
+        int day = toDay(finishedOn);
+        long before;
+        long after;
+        ReadingStateListener[] listeners;
+        synchronized (this) {
+            before = readingDays;
+            if (finishedDay(before) == day) {
+                return;
+            }
+            after = readingDays(startedDay(before), day);
+            readingDays = after;
+            listeners = this.listeners;
+        }
+        readingStateChanged(listeners, before, after);
+    }
+
+    /**
+     * Both reading days packed into one long, read in one step; see
+     * {@link #startedDay(long)} and {@link #finishedDay(long)}.
+     */
+    long readingDays() {
+        return readingDays;
+    }
+
+    int startedDay() {
+        return startedDay(readingDays);
+    }
+
+    int finishedDay() {
+        return finishedDay(readingDays);
+    }
+
+    void restoreReadingDays(int startedDay, int finishedDay) {
+        this.readingDays = readingDays(startedDay, finishedDay);
+    }
+
+    ReadingState readingState() {
+        return stateOf(readingDays);
+    }
+
+    /**
+     * Registers {@code listener} and returns the reading days it starts from: it is told
+     * about every later transition and about none before. Weak listeners whose owner is gone
+     * are dropped here.
+     */
+    synchronized long addReadingStateListener(ReadingStateListener listener) {
+        ReadingStateListener[] listeners = new ReadingStateListener[this.listeners.length + 1];
+        int kept = 0;
+        for (ReadingStateListener registered : this.listeners) {
+            if (!(registered instanceof WeakReadingStateListener) || !((WeakReadingStateListener<?>) registered).released()) {
+                listeners[kept++] = registered;
+            }
+        }
+        listeners[kept++] = listener;
+        this.listeners = kept == listeners.length ? listeners : Arrays.copyOf(listeners, kept);
+        return readingDays;
+    }
+
+    int readingStateListeners() {
+        return listeners.length;
+    }
+
+    /**
+     * Unregisters {@code listener} and returns the reading days it ends at: it may still be
+     * told about transitions up to them, but about none after.
+     */
+    synchronized long removeReadingStateListener(ReadingStateListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                ReadingStateListener[] listeners = new ReadingStateListener[this.listeners.length - 1];
+                System.arraycopy(this.listeners, 0, listeners, 0, i);
+                System.arraycopy(this.listeners, i + 1, listeners, i, listeners.length - i);
+                this.listeners = listeners;
+                break;
+            }
+        }
+        return readingDays;
+    }
+
+    private void readingStateChanged(ReadingStateListener[] listeners, long before, long after) {
+        ReadingState from = stateOf(before);
+        ReadingState to = stateOf(after);
+        for (ReadingStateListener listener : listeners) {
+            listener.readingStateChanged(this, from, to);
+        }
+    }
+
+    static long readingDays(int startedDay, int finishedDay) {
+        return (long) startedDay << 32 | finishedDay & 0xFFFFFFFFL;
+    }
+
+    static int startedDay(long readingDays) {
+        return (int) (readingDays >> 32);
+    }
+
+    static int finishedDay(long readingDays) {
+        return (int) readingDays;
+    }
+
+    static ReadingState stateOf(long readingDays) {
+        if (startedDay(readingDays) == NO_DAY) {
+            return ReadingState.TO_READ;
+        }
+        return finishedDay(readingDays) == NO_DAY ? ReadingState.IN_PROGRESS : ReadingState.READ;
+    }
+
+    /**
+     * Converts {@code date} to its epoch day, {@link #NO_DAY} for {@code null} and
+     * {@link #FAR_DAY} for a date whose epoch day does not fit an int.
+     */
+    static int toDay(LocalDate date) {
+        if (date == null) {
+            return NO_DAY;
+        }
+        long day = date.toEpochDay();
+        if (day <= FAR_DAY || day > Integer.MAX_VALUE) {
+            return FAR_DAY;
+        }
+        return (int) day;
+    }
+
+    static LocalDate toDate(int day) {
+        return day == NO_DAY ? null : LocalDate.ofEpochDay(day);
+    }
+
+    private static int hash(String title, String author, int publishedOn, LocalDate farPublishedOn) {
+        int result = title != null ? title.hashCode() : 0;
+        result = 31 * result + (author != null ? author.hashCode() : 0);
+        if (farPublishedOn != null) {
+            result = 31 * result + farPublishedOn.hashCode();
+        } else {
+            result = 31 * result + (publishedOn != NO_DAY ? publishedOn : 0);
+        }
+        return result;
+    }
+
+    /**
+     * Packs the first four chars of {@code title} into a long, padding shorter titles with
+     * zeros. Compared unsigned, two keys order like {@link String#compareTo} whenever they
+     * differ; equal keys leave the decision to the full titles.
+     */
+    private static long titleKey(String title) {
+        if (title == null) {
+            return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < 4; i++) {
+            key = key << 16 | (i < title.length() ? title.charAt(i) : 0);
+        }
+        return key;
     }
 
     @Override
@@ -50,22 +258,24 @@ public class Book implements Comparable<Book> {
 
         Book book = (Book) o;
 
+        if (hash != book.hash) return false;
         if (title != null ? !title.equals(book.title) : book.title != null) return false;
         if (author != null ? !author.equals(book.author) : book.author != null) return false;
-        return publishedOn != null ? publishedOn.equals(book.publishedOn) : book.publishedOn == null;
+        if (publishedOn != book.publishedOn) return false;
+        return farPublishedOn != null ? farPublishedOn.equals(book.farPublishedOn) : book.farPublishedOn == null;
 
     }
 
     @Override
     public int hashCode() {
-        int result = title != null ? title.hashCode() : 0;
-        result = 31 * result + (author != null ? author.hashCode() : 0);
-        result = 31 * result + (publishedOn != null ? publishedOn.hashCode() : 0);
-        return result;
+        return hash;
     }
 
     @Override
     public int compareTo(Book that) {
+        if (this.titleKey != that.titleKey) {
+            return Long.compareUnsigned(this.titleKey, that.titleKey);
+        }
         return this.title.compareTo(that.title);
     }
 
@@ -74,7 +284,7 @@ public class Book implements Comparable<Book> {
         return "Book{" +
                 "title='" + title + '\'' +
                 ", author='" + author + '\'' +
-                ", publishedOn=" + publishedOn +
+                ", publishedOn=" + getPublishedOn() +
                 '}';
     }
 }
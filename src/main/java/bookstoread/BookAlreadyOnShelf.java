@@ -0,0 +1,9 @@
+package bookstoread;
+
+public class BookAlreadyOnShelf extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public BookAlreadyOnShelf(String message) {
+        super(message);
+    }
+}
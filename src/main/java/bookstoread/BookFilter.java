@@ -1,53 +1,148 @@
 package bookstoread;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Function;
+import java.util.Arrays;
+import java.util.Comparator;
 
 public interface BookFilter {
   boolean apply(Book b);
 }
 
-class BookPublishedYearFilter implements BookFilter {
-  private Function<LocalDate, Boolean> comparison;
+class BookPublishedYearFilter extends BookPublishedDateFilter {
+
+  private BookPublishedYearFilter(long fromEpochDay, long toEpochDay) {
+    super(fromEpochDay, toEpochDay);
+  }
 
   static BookPublishedYearFilter After(int year) {
-    final LocalDate date = LocalDate.of(year, 12, 31);
-    BookPublishedYearFilter filter = new BookPublishedYearFilter();
-    filter.comparison = date::isBefore;
-    return filter;
+    return new BookPublishedYearFilter(LocalDate.of(year, 12, 31).toEpochDay() + 1, LATEST);
   }
 
   static BookPublishedYearFilter Before(int year) {
-    final LocalDate date = LocalDate.of(year, 1, 1);
-    BookPublishedYearFilter filter = new BookPublishedYearFilter();
-    filter.comparison = date::isAfter;
-    return filter;
+    return new BookPublishedYearFilter(EARLIEST, LocalDate.of(year, 1, 1).toEpochDay() - 1);
   }
 
-  @Override
-  public boolean apply(final Book b) {
-    return b!=null && comparison.apply(b.getPublishedOn());
+  static BookPublishedYearFilter Between(int fromYear, int toYear) {
+    return new BookPublishedYearFilter(LocalDate.of(fromYear, 1, 1).toEpochDay(), LocalDate.of(toYear, 12, 31).toEpochDay());
   }
 }
 
+/**
+ * Combines filters so that a book passes when all of them pass, or when any of them
+ * passes. Evaluation stops at the first filter that decides the outcome. The composite
+ * samples how long each filter takes and how often it decides the outcome, and
+ * periodically moves the filters that are cheap and decisive to the front.
+ */
 class CompositeFilter implements BookFilter {
-  private List<BookFilter> filters;
+  private static final int SAMPLE_INTERVAL = 64;
+  private static final int REORDER_INTERVAL = 4096;
+
+  private final boolean all;
+  private volatile SampledFilter[] filters = new SampledFilter[0];
+  private int applications;
 
   CompositeFilter() {
-    filters = new ArrayList<>();
+    this(true);
+  }
+
+  private CompositeFilter(boolean all) {
+    this.all = all;
+  }
+
+  static CompositeFilter allOf(final BookFilter... bookFilters) {
+    CompositeFilter filter = new CompositeFilter(true);
+    Arrays.stream(bookFilters).forEach(filter::addFilter);
+    return filter;
+  }
+
+  static CompositeFilter anyOf(final BookFilter... bookFilters) {
+    CompositeFilter filter = new CompositeFilter(false);
+    Arrays.stream(bookFilters).forEach(filter::addFilter);
+    return filter;
+  }
+
+  static BookFilter not(final BookFilter bookFilter) {
+    return b -> b != null && !bookFilter.apply(b);
   }
 
   @Override
   public boolean apply(final Book b) {
-    return filters.stream()
-      .map(bookFilter -> bookFilter.apply(b))
-      .reduce(true, (b1, b2) -> b1 && b2);
+    final SampledFilter[] current = filters;
+    final int application = ++applications;
+    if ((application & (SAMPLE_INTERVAL - 1)) != 0) {
+      for (SampledFilter filter : current) {
+        if (filter.bookFilter.apply(b) != all) {
+          return !all;
+        }
+      }
+      return all;
+    }
+    boolean result = all;
+    for (SampledFilter filter : current) {
+      if (filter.sample(b) != all) {
+        result = !all;
+        break;
+      }
+    }
+    if (application % REORDER_INTERVAL == 0) {
+      reorder(current);
+    }
+    return result;
   }
 
   void addFilter(final BookFilter bookFilter) {
-    filters.add(bookFilter);
+    SampledFilter[] current = filters;
+    SampledFilter[] extended = Arrays.copyOf(current, current.length + 1);
+    extended[current.length] = new SampledFilter(bookFilter, all);
+    filters = extended;
+  }
+
+  private void reorder(final SampledFilter[] current) {
+    SampledFilter[] reordered = current.clone();
+    Arrays.sort(reordered, Comparator.comparingDouble(SampledFilter::rank));
+    Arrays.stream(reordered).forEach(SampledFilter::decay);
+    if (filters == current) {
+      filters = reordered;
+    }
   }
-}
 
+  private static class SampledFilter {
+    private final BookFilter bookFilter;
+    private final boolean passing;
+    private long evaluations;
+    private long decisions;
+    private long nanos;
+
+    SampledFilter(final BookFilter bookFilter, final boolean all) {
+      this.bookFilter = bookFilter;
+      this.passing = all;
+    }
+
+    boolean sample(final Book b) {
+      long start = System.nanoTime();
+      boolean result = bookFilter.apply(b);
+      nanos += System.nanoTime() - start;
+      evaluations++;
+      if (result != passing) {
+        decisions++;
+      }
+      return result;
+    }
+
+    double rank() {
+      if (evaluations == 0) {
+        return 0;
+      }
+      if (decisions == 0) {
+        return Double.MAX_VALUE;
+      }
+      return (nanos + 1.0) / decisions;
+    }
+
+    void decay() {
+      evaluations /= 2;
+      decisions /= 2;
+      nanos /= 2;
+    }
+  }
+}
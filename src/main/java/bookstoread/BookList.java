@@ -0,0 +1,68 @@
+package bookstoread;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Growable list of books that callers can only read. The shelf indexes use it as a bucket.
+ * Removed books are only marked and are dropped in one pass when the list is next read, so
+ * a run of removals from a large bucket does not copy it once per book.
+ */
+class BookList extends AbstractList<Book> {
+    private Book[] books = new Book[4];
+    private int size;
+    private Set<Book> removed;
+
+    void append(Book book) {
+        if (removed != null && removed.contains(book)) {
+            purge();
+        }
+        if (size == books.length) {
+            books = Arrays.copyOf(books, size * 2);
+        }
+        books[size++] = book;
+    }
+
+    /**
+     * Removes every instance of {@code book}.
+     */
+    void removeInstances(Book book) {
+        if (removed == null) {
+            removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        removed.add(book);
+    }
+
+    @Override
+    public Book get(int index) {
+        purge();
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return books[index];
+    }
+
+    @Override
+    public int size() {
+        purge();
+        return size;
+    }
+
+    private void purge() {
+        if (removed == null) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed.contains(books[i])) {
+                books[kept++] = books[i];
+            }
+        }
+        Arrays.fill(books, kept, size, null);
+        size = kept;
+        removed = null;
+    }
+}
@@ -0,0 +1,44 @@
+package bookstoread;
+
+import java.time.LocalDate;
+import java.util.function.LongPredicate;
+
+/**
+ * Passes books published within an inclusive range of epoch days. The bounds are
+ * precomputed, so a check is two primitive comparisons; {@link #test(long)} lets the
+ * same range be applied to epoch days that are not wrapped in a book.
+ */
+class BookPublishedDateFilter implements BookFilter, LongPredicate {
+  static final long EARLIEST = Book.NO_DATE + 1;
+  static final long LATEST = Long.MAX_VALUE;
+
+  private final long fromEpochDay;
+  private final long toEpochDay;
+
+  BookPublishedDateFilter(long fromEpochDay, long toEpochDay) {
+    this.fromEpochDay = fromEpochDay;
+    this.toEpochDay = toEpochDay;
+  }
+
+  static BookPublishedDateFilter After(LocalDate date) {
+    return new BookPublishedDateFilter(date.toEpochDay() + 1, LATEST);
+  }
+
+  static BookPublishedDateFilter Before(LocalDate date) {
+    return new BookPublishedDateFilter(EARLIEST, date.toEpochDay() - 1);
+  }
+
+  static BookPublishedDateFilter Between(LocalDate from, LocalDate to) {
+    return new BookPublishedDateFilter(from.toEpochDay(), to.toEpochDay());
+  }
+
+  @Override
+  public boolean test(final long epochDay) {
+    return epochDay >= fromEpochDay && epochDay <= toEpochDay;
+  }
+
+  @Override
+  public boolean apply(final Book b) {
+    return b != null && test(b.publishedEpochDay());
+  }
+}
@@ -1,72 +1,626 @@
 package bookstoread;
 
+import java.lang.ref.WeakReference;
 import java.time.Year;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.collectingAndThen;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 
+/**
+ * A shelf has a single writer, but {@link #books()} may be called from any thread at any
+ * time. It returns an immutable snapshot of the books that later adds and removals do not
+ * change, without locking and without copying the shelf. Books are published one at a
+ * time, so a snapshot taken while several books are added or removed may hold some of them.
+ * <p>
+ * Books report reading state transitions on whichever thread changes them. The counters
+ * behind {@link #progress()} are atomic; kept groupings and arrangements are updated under
+ * a lock that the writer and the queries reading them hold as well. A book is counted in
+ * the state its listener was registered in, and grouped under the same lock before any
+ * transition it reports is applied to the groupings, so no transition is lost or counted
+ * twice.
+ */
 public class BookShelf {
 
-    private final List<Book> books = new ArrayList<>();
+    private Book[] books = new Book[16];
+    private int[] removedIn;
+    private int slots;
+    private int size;
+    private int removals;
+    private volatile BookVector snapshot = BookVector.EMPTY;
     private final int capacity;
+    private final ReadingCounters counters = new ReadingCounters();
+    private final PublicationYearIndex publicationYears = new PublicationYearIndex();
+    private final Groupings groupings = new Groupings();
+    private final Map<Comparator<Book>, SortedView> arrangements = new HashMap<>();
+    private final Object derived = new Object();
+    private final ReadingStateListener readingListener = new ShelfListener(new WeakReference<>(this));
+    private final boolean indexed;
+    private TitleIndex titleIndex;
+    private EqualBooks equalBooks;
+    private final Map<String, Function<Book, ?>> classifiers = new ConcurrentHashMap<>();
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.ALLOW;
+    private final LongAdder duplicatesSkipped = new LongAdder();
+    private Set<Book> batchChanges;
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private ShelfMetrics metrics;
+    private volatile Object writer;
 
     public BookShelf() {
-        this.capacity = Integer.MAX_VALUE;
+        this(Integer.MAX_VALUE);
     }
 
     public BookShelf(int capacity) {
+        this(capacity, true);
+    }
+
+    /**
+     * Shelves that store books themselves pass {@code indexed = false}: they do not feed the
+     * indexes and groupings of this class. They implement removal and duplicate policies on
+     * their own storage, answer title queries and arrangements by scanning it, and compute
+     * registered groupings when they are read. {@link #withTitleIndex()} and
+     * {@link #keepArranged(Comparator)} throw on them.
+     */
+    BookShelf(int capacity, boolean indexed) {
         this.capacity = capacity;
+        this.indexed = indexed;
+    }
+
+    /**
+     * Indexes the titles, so {@link #findBooksByTitle(String)} looks words up instead of
+     * scanning every book. Shelves that store books themselves, such as
+     * {@link ConcurrentBookShelf} and {@link ColumnarBookShelf}, always scan and throw
+     * {@link UnsupportedOperationException}.
+     */
+    public BookShelf withTitleIndex() {
+        requireIndexed("Title indexes");
+        if (titleIndex == null) {
+            titleIndex = new TitleIndex();
+            books().forEach(titleIndex::add);
+        }
+        return this;
+    }
+
+    /**
+     * Indexes the books by {@link Book#equals(Object)}, which makes {@link #contains(Book)}
+     * a hash lookup, and applies {@code policy} to books added from now on.
+     */
+    public BookShelf withDuplicatePolicy(DuplicatePolicy policy) {
+        Objects.requireNonNull(policy);
+        indexEqualBooks();
+        this.duplicatePolicy = policy;
+        return this;
+    }
+
+    void indexEqualBooks() {
+        equalBooks();
+    }
+
+    DuplicatePolicy duplicatePolicy() {
+        return duplicatePolicy;
+    }
+
+    /**
+     * Applies the duplicate policy to {@code book}, which is equal to a book on the shelf,
+     * and tells whether to add it anyway.
+     */
+    boolean admitDuplicate(Book book) {
+        if (duplicatePolicy == DuplicatePolicy.REJECT) {
+            throw new BookAlreadyOnShelf(book + " is already on the shelf");
+        }
+        if (duplicatePolicy == DuplicatePolicy.SKIP) {
+            duplicatesSkipped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs arrange, groupBy, findBooksByTitle and scanned progress on the common fork-join
+     * pool once the shelf holds at least {@code threshold} books. Results are the same as
+     * sequential ones, including their order, but filters and classifiers passed to those
+     * queries must then be safe to call from several threads.
+     */
+    public BookShelf withParallelism(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be positive but was " + threshold);
+        }
+        this.parallelThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * Records the latency of add, remove, arrange, groupBy, progress and findBooksByTitle,
+     * and every refused add, in {@code metrics}. A shelf without metrics only checks a
+     * field before each of these calls.
+     */
+    public BookShelf withMetrics(ShelfMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        return this;
+    }
+
+    boolean parallel(int books) {
+        return books >= parallelThreshold;
+    }
+
+    Stream<Book> stream(List<Book> books) {
+        return parallel(books.size()) ? books.parallelStream() : books.stream();
     }
 
     public List<Book> books() {
-        return Collections.unmodifiableList(books);
+        return snapshot;
+    }
+
+    private void publish() {
+        snapshot = new BookVector(books, removedIn, slots, size, removals);
+    }
+
+    private EqualBooks equalBooks() {
+        if (equalBooks == null) {
+            equalBooks = new EqualBooks();
+            for (int slot = 0; slot < slots; slot++) {
+                if (isLive(slot)) {
+                    equalBooks.add(books[slot], slot);
+                }
+            }
+        }
+        return equalBooks;
+    }
+
+    private boolean isLive(int slot) {
+        return removedIn == null || removedIn[slot] == 0;
     }
 
     public void add(Book... booksToAdd) throws BookShelfCapacityReached {
-        Arrays.stream(booksToAdd).forEach(book -> {
-            if (books.size() == capacity) {
-                throw new BookShelfCapacityReached(String.format("BookShelf capacity of %d is reached. You can't add more books.", this.capacity));
+        requireWriter();
+        if (metrics != null) {
+            metrics.time(ShelfMetrics.Operation.ADD, () -> addBooks(booksToAdd));
+            return;
+        }
+        addBooks(booksToAdd);
+    }
+
+    void addBooks(Book[] booksToAdd) {
+        Arrays.stream(booksToAdd).forEach(this::append);
+    }
+
+    /**
+     * Publishes each book under the lock for derived views, together with adding it to
+     * them, so a view built from {@link #books()} under that lock holds a book exactly when
+     * it is not added to the view afterwards.
+     */
+    private void append(Book book) {
+        if (duplicatePolicy != DuplicatePolicy.ALLOW && equalBooks.contains(book) && !admitDuplicate(book)) {
+            return;
+        }
+        if (size == capacity) {
+            throw capacityReached();
+        }
+        if (slots == books.length) {
+            relocate((int) Math.max(16, Math.min(2L * size, Integer.MAX_VALUE - 8)));
+        }
+        int slot = slots++;
+        books[slot] = book;
+        size++;
+        if (equalBooks != null) {
+            equalBooks.add(book, slot);
+        }
+        if (titleIndex != null) {
+            titleIndex.add(book);
+        }
+        synchronized (derived) {
+            counters.add(Book.stateOf(book.addReadingStateListener(readingListener)));
+            publish();
+            publicationYears.add(book);
+            groupings.added(book);
+            arrangements.values().forEach(view -> view.add(book));
+        }
+    }
+
+    /**
+     * Tells whether a book equal to {@code book} is on the shelf. Without a
+     * {@link #withDuplicatePolicy(DuplicatePolicy) duplicate policy} this scans the shelf.
+     */
+    public boolean contains(Book book) {
+        if (equalBooks != null) {
+            return equalBooks.contains(book);
+        }
+        return books().contains(book);
+    }
+
+    /**
+     * Removes every book equal to one of {@code booksToRemove} and returns how many books
+     * were removed. Each book is found through a hash index, which the first removal builds,
+     * and costs O(1) besides its title trigrams: removed books leave a hole in the shelf
+     * that is compacted away once holes outnumber books, and the indexes drop them on their
+     * next read.
+     */
+    public int remove(Book... booksToRemove) {
+        requireWriter();
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.REMOVE, () -> removeBooks(booksToRemove));
+        }
+        return removeBooks(booksToRemove);
+    }
+
+    int removeBooks(Book[] booksToRemove) {
+        EqualBooks index = equalBooks();
+        int count = 0;
+        for (Book book : booksToRemove) {
+            for (int slot : index.remove(book)) {
+                removeSlot(slot);
+                count++;
+            }
+        }
+        removedBooks(count);
+        return count;
+    }
+
+    /**
+     * Removes every book {@code filter} accepts and returns how many books were removed.
+     */
+    public int removeIf(BookFilter filter) {
+        requireWriter();
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.REMOVE, () -> removeBooksIf(filter));
+        }
+        return removeBooksIf(filter);
+    }
+
+    int removeBooksIf(BookFilter filter) {
+        Set<Book> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        int count = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            Book book = books[slot];
+            if (isLive(slot) && (removed.contains(book) || filter.apply(book))) {
+                if (equalBooks != null) {
+                    equalBooks.removeSlot(book, slot);
+                }
+                removeSlot(slot);
+                removed.add(book);
+                count++;
+            }
+        }
+        removedBooks(count);
+        return count;
+    }
+
+    /**
+     * Stamps {@code slot} with a new removal epoch, which hides it from the snapshot
+     * published with the removal but not from earlier ones, and takes its book off the
+     * counters and indexes.
+     */
+    private void removeSlot(int slot) {
+        if (removedIn == null) {
+            removedIn = new int[books.length];
+        }
+        removedIn[slot] = ++removals;
+        size--;
+        removed(books[slot]);
+    }
+
+    /**
+     * Ends a removal of {@code count} books. The shelf is compacted once holes outnumber
+     * books, so each removed book pays O(1) for the copy.
+     */
+    private void removedBooks(int count) {
+        if (count > 0 && slots - size > size) {
+            relocate(Math.max(16, 2 * size));
+            publish();
+        }
+    }
+
+    /**
+     * Copies the books on the shelf into a new array of {@code length}, leaving out the
+     * holes and leaving the arrays of earlier snapshots as they are.
+     */
+    private void relocate(int length) {
+        Book[] kept = new Book[length];
+        int keptSize = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (isLive(slot)) {
+                kept[keptSize++] = books[slot];
+            }
+        }
+        boolean moved = keptSize != slots;
+        books = kept;
+        slots = keptSize;
+        removedIn = null;
+        removals = 0;
+        if (moved && equalBooks != null) {
+            equalBooks = null;
+            equalBooks();
+        }
+    }
+
+    /**
+     * Takes one occurrence of {@code book} off the counters and indexes, publishing the
+     * shelf without it under the lock for derived views like {@link #append(Book)} does.
+     */
+    private void removed(Book book) {
+        counters.remove(Book.stateOf(book.removeReadingStateListener(readingListener)));
+        synchronized (derived) {
+            publish();
+            publicationYears.remove(book);
+            groupings.removed(book);
+            arrangements.values().forEach(view -> view.remove(book));
+        }
+        if (titleIndex != null) {
+            titleIndex.remove(book);
+        }
+    }
+
+    /**
+     * Number of books left out by {@link DuplicatePolicy#SKIP} so far.
+     */
+    long duplicatesSkipped() {
+        return duplicatesSkipped.sum();
+    }
+
+    private void readingStateChanged(Book book, ReadingState from, ReadingState to) {
+        counters.readingStateChanged(from, to);
+        synchronized (derived) {
+            if (batchChanges != null) {
+                batchChanges.add(book);
+                return;
+            }
+            groupings.readingStateChanged(book);
+            arrangements.values().forEach(SortedView::invalidate);
+        }
+    }
+
+    /**
+     * Applies {@code batch} in one pass over the shelf. Kept groupings and arrangements are
+     * brought up to date once at the end instead of after every change, together with
+     * changes other threads make meanwhile. Returns the number of books whose reading dates
+     * changed.
+     */
+    public int apply(ReadingStatusBatch batch) {
+        Set<Book> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (derived) {
+            batchChanges = changed;
+        }
+        int books = 0;
+        try {
+            for (Book book : books()) {
+                if (batch.applyTo(book)) {
+                    books++;
+                }
+            }
+        } finally {
+            synchronized (derived) {
+                batchChanges = null;
+                if (!changed.isEmpty()) {
+                    groupings.readingStatesChanged(changed, books());
+                    arrangements.values().forEach(SortedView::invalidate);
+                }
             }
-            books.add(book);
-        });
+        }
+        return books;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Lets only threads holding the monitor of {@code writer} add and remove books, for
+     * owners that must see every change made to the shelf.
+     */
+    void restrictWritesTo(Object writer) {
+        this.writer = writer;
+    }
+
+    private void requireWriter() {
+        Object writer = this.writer;
+        if (writer != null && !Thread.holdsLock(writer)) {
+            throw new UnsupportedOperationException("Books on this shelf are added and removed through its owner");
+        }
+    }
+
+    BookShelfCapacityReached capacityReached() {
+        if (metrics != null) {
+            metrics.capacityReachedFired();
+        }
+        return new BookShelfCapacityReached(String.format("BookShelf capacity of %d is reached. You can't add more books.", this.capacity));
     }
 
     public List<Book> arrange() {
         return arrange(Comparator.naturalOrder());
     }
 
+    /**
+     * Arranges the books by {@code comparator}. For a comparator registered with
+     * {@link #keepArranged(Comparator)} this is a read-only snapshot of the kept view.
+     */
     public List<Book> arrange(Comparator<Book> comparator) {
-        return books
-                .stream()
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.ARRANGE, () -> arranged(comparator));
+        }
+        return arranged(comparator);
+    }
+
+    private List<Book> arranged(Comparator<Book> comparator) {
+        synchronized (derived) {
+            SortedView view = arrangements.get(comparator);
+            if (view != null) {
+                return view.snapshot(books());
+            }
+        }
+        return stream(books())
                 .sorted(comparator)
                 .collect(toList());
     }
 
+    /**
+     * Keeps the books sorted by {@code comparator}, inserting each added book at its place,
+     * so that {@link #arrange(Comparator)} with the same comparator instance does not sort.
+     * {@code Comparator.naturalOrder()} registers the order used by {@link #arrange()}.
+     * Shelves that store books themselves sort on every call and throw
+     * {@link UnsupportedOperationException}.
+     */
+    public BookShelf keepArranged(Comparator<Book> comparator) {
+        requireIndexed("Kept arrangements");
+        synchronized (derived) {
+            arrangements.putIfAbsent(comparator, new SortedView(comparator));
+        }
+        return this;
+    }
+
+    private void requireIndexed(String feature) {
+        if (!indexed) {
+            throw new UnsupportedOperationException(feature + " are not kept by " + getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Returns the first {@code limit} books of {@link #arrange(Comparator)} without sorting
+     * the whole shelf.
+     */
+    public List<Book> arrange(Comparator<Book> comparator, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative but was " + limit);
+        }
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.ARRANGE, () -> arranged(comparator, limit));
+        }
+        return arranged(comparator, limit);
+    }
+
+    private List<Book> arranged(Comparator<Book> comparator, int limit) {
+        synchronized (derived) {
+            SortedView view = arrangements.get(comparator);
+            if (view != null) {
+                List<Book> books = view.snapshot(books());
+                return new ArrayList<>(books.subList(0, Math.min(limit, books.size())));
+            }
+        }
+        return new TopBooks(books(), comparator).first(limit);
+    }
+
+    /**
+     * Returns {@link #arrange(Comparator)} page by page. Each page is selected after the last
+     * book of the previous one, so later pages do not sort the shelf either.
+     */
+    public Iterator<List<Book>> pages(Comparator<Book> comparator, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive but was " + pageSize);
+        }
+        return new TopBooks(books(), comparator).pages(pageSize);
+    }
+
+    /**
+     * Groups the books by publication year in year order. The result is read-only and does
+     * not follow later changes of the shelf.
+     */
     public Map<Year, List<Book>> groupByPublicationYear() {
-        return groupBy(book -> Year.of(book.getPublishedOn().getYear()));
+        synchronized (derived) {
+            return publicationYears.byYear();
+        }
+    }
+
+    public List<Book> booksPublishedBefore(int year) {
+        if (year <= Year.MIN_VALUE) {
+            return new ArrayList<>();
+        }
+        return booksPublishedBetween(Year.MIN_VALUE, year - 1);
+    }
+
+    public List<Book> booksPublishedAfter(int year) {
+        if (year >= Year.MAX_VALUE) {
+            return new ArrayList<>();
+        }
+        return booksPublishedBetween(year + 1, Year.MAX_VALUE);
     }
 
+    /**
+     * Returns the books published from {@code fromYear} to {@code toYear}, both inclusive,
+     * ordered by publication year and then by the order they were added in.
+     */
+    public List<Book> booksPublishedBetween(int fromYear, int toYear) {
+        synchronized (derived) {
+            return publicationYears.between(fromYear, toYear);
+        }
+    }
+
+    /**
+     * Groups the books by {@code fx}. The result is read-only and is reused for the same
+     * classifier instance until the shelf changes.
+     */
     public <K> Map<K, List<Book>> groupBy(Function<Book, K> fx) {
-        return books
-                .stream()
-                .collect(groupingBy(fx));
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.GROUP_BY, () -> grouped(fx));
+        }
+        return grouped(fx);
     }
 
-    public Progress progress() {
-        if (books.isEmpty()) {
-            return Progress.notStarted();
+    private <K> Map<K, List<Book>> grouped(Function<Book, K> fx) {
+        List<Book> books = books();
+        if (!indexed) {
+            return group(fx, books);
         }
-        int booksRead = Long.valueOf(books.stream().filter(Book::isRead).count()).intValue();
-        int booksInProgress = Long.valueOf(books.stream().filter(Book::isProgress).count()).intValue();
-        int booksToRead = books.size() - booksRead - booksInProgress;
+        synchronized (derived) {
+            return groupings.cached(fx, books, () -> group(fx, books));
+        }
+    }
 
-        int percentageCompleted = booksRead * 100 / books.size();
-        int percentageToRead = booksToRead * 100 / books.size();
-        int percentageInProgress = booksInProgress * 100 / books.size();
+    private <K> Map<K, List<Book>> group(Function<Book, K> fx, List<Book> books) {
+        return Collections.unmodifiableMap(stream(books)
+                .collect(groupingBy(fx, collectingAndThen(toList(), Collections::unmodifiableList))));
+    }
 
-        return new Progress(percentageCompleted, percentageToRead, percentageInProgress);
+    /**
+     * Keeps the books grouped by {@code fx} under {@code name}. The grouping is updated as
+     * books are added and change reading state, and is read with {@link #grouping(String)},
+     * which returns a read-only copy that is reused until the grouping changes. Shelves that
+     * store books themselves only remember {@code fx} and group the books anew on every
+     * read.
+     */
+    public <K> void registerGrouping(String name, Function<Book, K> fx) {
+        if (indexed) {
+            synchronized (derived) {
+                groupings.register(name, fx, books());
+            }
+        } else {
+            classifiers.put(name, fx);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K> Map<K, List<Book>> grouping(String name) {
+        if (indexed) {
+            synchronized (derived) {
+                return groupings.registered(name);
+            }
+        }
+        Function<Book, K> fx = (Function<Book, K>) classifiers.get(name);
+        if (fx == null) {
+            throw new IllegalArgumentException("No grouping registered as " + name);
+        }
+        return group(fx, books());
+    }
+
+    public Progress progress() {
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.PROGRESS, () -> Progress.of(readingStateCounts()));
+        }
+        return Progress.of(readingStateCounts());
+    }
+
+    /**
+     * Returns the number of books per {@link ReadingState} ordinal.
+     */
+    long[] readingStateCounts() {
+        return counters.counts(size());
     }
 
     public List<Book> findBooksByTitle(String title) {
@@ -74,9 +628,32 @@ public class BookShelf {
     }
 
     public List<Book> findBooksByTitle(String title, BookFilter filter) {
-        return books.stream()
+        if (metrics != null) {
+            return metrics.time(ShelfMetrics.Operation.FIND_BOOKS_BY_TITLE, () -> findBooks(title, filter));
+        }
+        return findBooks(title, filter);
+    }
+
+    List<Book> findBooks(String title, BookFilter filter) {
+        List<Book> candidates = titleIndex == null ? null : titleIndex.candidates(title);
+        return stream(candidates == null ? books() : candidates)
                 .filter(b -> b.getTitle().toLowerCase().contains(title))
                 .filter(b -> filter.apply(b))
                 .collect(toList());
     }
+
+    /**
+     * Books refer to their shelves through this listener only, so a shelf that is no longer
+     * used can be collected even while its books are still around.
+     */
+    private static class ShelfListener extends WeakReadingStateListener<BookShelf> {
+        ShelfListener(WeakReference<BookShelf> shelf) {
+            super(shelf);
+        }
+
+        @Override
+        void readingStateChanged(BookShelf shelf, Book book, ReadingState from, ReadingState to) {
+            shelf.readingStateChanged(book, from, to);
+        }
+    }
 }
@@ -0,0 +1,239 @@
+package bookstoread;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a shelf: its capacity, a dictionary of every distinct title and author,
+ * and one fixed-size record per book holding dictionary codes and epoch days.
+ * <pre>
+ * int magic, short version, int capacity
+ * int strings, then per string: int length, UTF-8 bytes
+ * int books, then per book: int title, int author, int publishedOn, int startedOn, int finishedOn,
+ *   and long publishedOn if the int one is FAR_DAY
+ * int CRC32 of everything before it
+ * </pre>
+ * {@code FAR_DAY} stands for a date whose epoch day does not fit an int, as in
+ * {@link Book}; versions before 3 have no such dates.
+ * A book instance that is on the shelf more than once is written in full at its first
+ * position only. Its later positions hold {@code SAME} as title and the first position as
+ * author, so reading the snapshot puts the same instance back on the shelf.
+ * <p>
+ * Snapshots are read through a memory mapping, so loading is bound by parsing rather than
+ * by copying the file.
+ */
+public class BookShelfSnapshot {
+
+    static final int MAGIC = 0x424B5348;
+    static final short VERSION = 3;
+    static final int SAME = -2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BookShelfSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to {@code file}, forces it to disk and
+     * moves it over {@code file} atomically. After a crash {@code file} holds either the
+     * previous snapshot or the complete new one.
+     */
+    public static void write(BookShelf shelf, Path file) throws IOException {
+        List<Book> books = shelf.books();
+        write(shelf.capacity(), books, readingDays(books), file);
+    }
+
+    /**
+     * Returns the started and finished day of each book in turn, as {@link #write} takes
+     * them.
+     */
+    static int[] readingDays(List<Book> books) {
+        int[] days = new int[books.size() * 2];
+        for (int i = 0; i < books.size(); i++) {
+            long readingDays = books.get(i).readingDays();
+            days[2 * i] = Book.startedDay(readingDays);
+            days[2 * i + 1] = Book.finishedDay(readingDays);
+        }
+        return days;
+    }
+
+    /**
+     * Writes {@code books} with the reading dates in {@code readingDays} rather than the ones
+     * the books have now, so the snapshot is of the moment the dates were read.
+     */
+    static void write(int capacity, List<Book> books, int[] readingDays, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(capacity, books, readingDays, channel);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        WriteAheadLog.forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    private static void write(int capacity, List<Book> books, int[] readingDays, FileChannel channel) throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        Map<Book, Integer> positions = new IdentityHashMap<>();
+        int[] codes = new int[books.size() * 2];
+        for (int i = 0; i < books.size(); i++) {
+            Integer first = positions.putIfAbsent(books.get(i), i);
+            if (first != null) {
+                codes[2 * i] = SAME;
+                codes[2 * i + 1] = first;
+            } else {
+                codes[2 * i] = dictionary.encode(books.get(i).getTitle());
+                codes[2 * i + 1] = dictionary.encode(books.get(i).getAuthor());
+            }
+        }
+        Output out = new Output(channel);
+        out.ensure(10).putInt(MAGIC).putShort(VERSION).putInt(capacity);
+        out.ensure(4).putInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            byte[] bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+            out.ensure(4).putInt(bytes.length);
+            out.put(bytes);
+        }
+        out.ensure(4).putInt(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            out.ensure(28)
+                    .putInt(codes[2 * i])
+                    .putInt(codes[2 * i + 1])
+                    .putInt(book.publishedDay())
+                    .putInt(readingDays[2 * i])
+                    .putInt(readingDays[2 * i + 1]);
+            if (book.publishedDay() == Book.FAR_DAY) {
+                out.ensure(8).putLong(book.publishedEpochDay());
+            }
+        }
+        out.finish();
+    }
+
+    public static BookShelf read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2 GB and cannot be mapped");
+            }
+            if (size < 14) {
+                throw new EOFException("Snapshot " + file + " is truncated");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            verifyChecksum(file, buffer);
+            return read(file, buffer);
+        }
+    }
+
+    private static BookShelf read(Path file, ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException(file + " is not a bookshelf snapshot");
+        }
+        short version = in.getShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported bookshelf snapshot version " + version + " in " + file);
+        }
+        BookShelf shelf = new BookShelf(in.getInt());
+        String[] strings = new String[in.getInt()];
+        for (int code = 0; code < strings.length; code++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings[code] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        Book[] books = new Book[in.getInt()];
+        for (int i = 0; i < books.length; i++) {
+            int title = in.getInt();
+            int author = in.getInt();
+            int publishedOn = in.getInt();
+            int startedOn = in.getInt();
+            int finishedOn = in.getInt();
+            LocalDate published = version >= 3 && publishedOn == Book.FAR_DAY ? LocalDate.ofEpochDay(in.getLong()) : Book.toDate(publishedOn);
+            if (title == SAME) {
+                if (author < 0 || author >= i) {
+                    throw new IOException("Snapshot " + file + " refers book " + i + " to book " + author);
+                }
+                books[i] = books[author];
+                continue;
+            }
+            books[i] = new Book(decode(strings, title), decode(strings, author), published);
+            books[i].restoreReadingDays(startedOn, finishedOn);
+        }
+        shelf.add(books);
+        return shelf;
+    }
+
+    private static void verifyChecksum(Path file, ByteBuffer buffer) throws IOException {
+        ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.limit() - 4);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - 4)) {
+            throw new IOException("Snapshot " + file + " is corrupt: checksum mismatch");
+        }
+        buffer.limit(buffer.limit() - 4);
+    }
+
+    private static String decode(String[] strings, int code) {
+        return code == StringDictionary.NULL_CODE ? null : strings[code];
+    }
+
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(ensure(1).remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
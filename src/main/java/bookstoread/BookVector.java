@@ -0,0 +1,121 @@
+package bookstoread;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable view of a prefix of the shelf's slot array. The shelf appends past the end
+ * of every vector it has handed out and removes books by stamping their slot with the
+ * removal that took them, so a vector stays a consistent snapshot while it shares its
+ * arrays with later ones: a slot belongs to it unless it was removed at or before the
+ * vector's removal epoch. Taking a snapshot is O(1); only growing or compacting the array
+ * copies it.
+ * <p>
+ * A vector with removed slots finds a book by index through a table of live slots, built
+ * on the first random access. Iteration skips removed slots without it.
+ */
+final class BookVector extends AbstractList<Book> implements RandomAccess {
+
+    static final BookVector EMPTY = new BookVector(new Book[0], null, 0, 0, 0);
+
+    private final Book[] books;
+    private final int[] removedIn;
+    private final int slots;
+    private final int size;
+    private final int epoch;
+    private volatile int[] live;
+
+    /**
+     * {@code removedIn} holds the removal epoch of each slot, 0 for slots never removed, and
+     * is {@code null} while no slot was removed.
+     */
+    BookVector(Book[] books, int[] removedIn, int slots, int size, int epoch) {
+        this.books = books;
+        this.removedIn = removedIn;
+        this.slots = slots;
+        this.size = size;
+        this.epoch = epoch;
+    }
+
+    @Override
+    public Book get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return size == slots ? books[index] : books[live()[index]];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Book> iterator() {
+        if (size == slots) {
+            return super.iterator();
+        }
+        return new Iterator<Book>() {
+            private int slot = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < slots;
+            }
+
+            @Override
+            public Book next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Book book = books[slot];
+                slot = nextLive(slot + 1);
+                return book;
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        if (size == slots) {
+            return Arrays.copyOf(books, size, Object[].class);
+        }
+        Object[] array = new Object[size];
+        int i = 0;
+        for (int slot = nextLive(0); slot < slots; slot = nextLive(slot + 1)) {
+            array[i++] = books[slot];
+        }
+        return array;
+    }
+
+    private boolean isLive(int slot) {
+        int removed = removedIn[slot];
+        return removed == 0 || removed > epoch;
+    }
+
+    /**
+     * Returns the first live slot from {@code slot} on, or {@code slots} if there is none.
+     */
+    private int nextLive(int slot) {
+        while (slot < slots && !isLive(slot)) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private int[] live() {
+        int[] live = this.live;
+        if (live == null) {
+            live = new int[size];
+            int i = 0;
+            for (int slot = nextLive(0); slot < slots; slot = nextLive(slot + 1)) {
+                live[i++] = slot;
+            }
+            this.live = live;
+        }
+        return live;
+    }
+}
@@ -0,0 +1,95 @@
+package bookstoread;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams books into a shelf in fixed-size batches, so a catalog of any size is imported
+ * with a constant amount of memory. When the shelf runs out of capacity the import stops
+ * and the result tells how many books made it onto the shelf. Books a shelf skips as
+ * duplicates do not count as imported and leave room for the following ones.
+ */
+public class CatalogImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final BookShelf shelf;
+    private final int batchSize;
+
+    public CatalogImporter(BookShelf shelf) {
+        this(shelf, DEFAULT_BATCH_SIZE);
+    }
+
+    public CatalogImporter(BookShelf shelf, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        this.shelf = shelf;
+        this.batchSize = batchSize;
+    }
+
+    public Result importBooks(Stream<Book> books) {
+        return importBooks(books.iterator());
+    }
+
+    public Result importBooks(Iterator<Book> books) {
+        Book[] batch = new Book[batchSize];
+        long imported = 0;
+        while (books.hasNext()) {
+            int size = 0;
+            while (size < batchSize && books.hasNext()) {
+                batch[size++] = books.next();
+            }
+            int offset = 0;
+            while (offset < size) {
+                int before = shelf.size();
+                int accepted = Math.min(size - offset, shelf.capacity() - before);
+                if (accepted == 0) {
+                    return new Result(imported, true);
+                }
+                long skipped = shelf.duplicatesSkipped();
+                try {
+                    shelf.add(accepted == batchSize ? batch : Arrays.copyOfRange(batch, offset, offset + accepted));
+                } catch (BookShelfCapacityReached e) {
+                    return new Result(imported + shelf.size() - before, true);
+                }
+                imported += accepted - (shelf.duplicatesSkipped() - skipped);
+                offset += accepted;
+            }
+        }
+        return new Result(imported, false);
+    }
+
+    /**
+     * Imports books from CSV as described by {@link CsvBookReader}.
+     */
+    public Result importCsv(ReadableByteChannel channel) throws IOException {
+        try {
+            return importBooks(new CsvBookReader(channel));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static class Result {
+        private final long imported;
+        private final boolean capacityReached;
+
+        Result(long imported, boolean capacityReached) {
+            this.imported = imported;
+            this.capacityReached = capacityReached;
+        }
+
+        public long imported() {
+            return imported;
+        }
+
+        public boolean capacityReached() {
+            return capacityReached;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package bookstoread;
+
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * A {@link BookShelf} that stores its books column by column instead of as {@link Book}
+ * objects. Titles and authors are dictionary encoded, publication dates are kept as epoch
+ * days and the reading state as one byte per book, so progress, year and title scans walk
+ * primitive arrays.
+ * <p>
+ * Books handed out by this shelf are views created on demand. A view equals the book that
+ * was added, and reading dates set on either of them are written through to the shelf, but
+ * it is not the same instance. Reading dates are a column of packed days as well. Each
+ * book gets an id when it is added, and the added book and its views listen through a
+ * {@link RowListener} that holds only that id; a remap from ids to rows follows the book
+ * when removals move its row, so views stay attached to it. The shelf holds no object per
+ * book. Ids are not reused, so the remap grows by one int per book ever added.
+ * Publication dates too far off for an int epoch day are kept by id in a map on the side,
+ * which like the remap keeps them for removed books too.
+ * <p>
+ * {@link #books()} and the scans read a published set of columns. Adds append past its end,
+ * while growing and removing copy into new columns, so the published columns never change
+ * under a reader. Title queries and arrangements scan the columns; the shelf keeps no title
+ * index or arrangement, and registered groupings are computed when they are read.
+ */
+public class ColumnarBookShelf extends BookShelf {
+
+    private final StringDictionary titleDictionary = new StringDictionary();
+    private final StringDictionary authorDictionary = new StringDictionary();
+    private int[] titles = new int[16];
+    private int[] authors = new int[16];
+    private int[] publishedOn = new int[16];
+    private byte[] states = new byte[16];
+    private AtomicLongArray readingDays = new AtomicLongArray(16);
+    private int[] ids = new int[16];
+    private int[] rowsById = new int[16];
+    private int nextId;
+    private final Map<Integer, LocalDate> farPublishedOn = new ConcurrentHashMap<>();
+    private int size;
+    private volatile Columns columns = new Columns();
+    private Map<Book, Integer> equalBooks;
+    private final WeakReference<ColumnarBookShelf> self = new WeakReference<>(this);
+
+    private static final int REMOVED = -1;
+
+    public ColumnarBookShelf() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public ColumnarBookShelf(int capacity) {
+        super(capacity, false);
+    }
+
+    @Override
+    public List<Book> books() {
+        return columns;
+    }
+
+    @Override
+    void addBooks(Book[] booksToAdd) {
+        try {
+            Arrays.stream(booksToAdd).forEach(this::append);
+        } finally {
+            if (columns.size != size) {
+                publish();
+            }
+        }
+    }
+
+    private void append(Book book) {
+        if (equalBooks != null && equalBooks.containsKey(book) && duplicatePolicy() != DuplicatePolicy.ALLOW && !admitDuplicate(book)) {
+            return;
+        }
+        if (size == capacity()) {
+            throw capacityReached();
+        }
+        addRow(book);
+        if (equalBooks != null) {
+            equalBooks.merge(book, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Fills a new row with {@code book}, listening to it before reading its reading dates.
+     * Runs under the lock reading state changes take, so a transition reported meanwhile
+     * waits and then writes the dates it finds; none is lost and none is overwritten with
+     * older dates.
+     */
+    private synchronized void addRow(Book book) {
+        if (size == states.length) {
+            grow();
+        }
+        if (nextId == rowsById.length) {
+            rowsById = Arrays.copyOf(rowsById, (int) Math.min(2L * nextId, Integer.MAX_VALUE - 8));
+        }
+        int row = size;
+        int id = nextId++;
+        titles[row] = titleDictionary.encode(book.getTitle());
+        authors[row] = authorDictionary.encode(book.getAuthor());
+        publishedOn[row] = book.publishedDay();
+        if (publishedOn[row] == Book.FAR_DAY) {
+            farPublishedOn.put(id, book.getPublishedOn());
+        }
+        ids[row] = id;
+        rowsById[id] = row;
+        long days = book.addReadingStateListener(new RowListener(self, id));
+        readingDays.set(row, days);
+        states[row] = (byte) Book.stateOf(days).ordinal();
+        size++;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+
+    @Override
+    void indexEqualBooks() {
+        if (equalBooks == null) {
+            equalBooks = new HashMap<>();
+            books().forEach(book -> equalBooks.merge(book, 1, Integer::sum));
+        }
+    }
+
+    @Override
+    public boolean contains(Book book) {
+        return equalBooks != null ? equalBooks.containsKey(book) : super.contains(book);
+    }
+
+    @Override
+    int removeBooks(Book[] booksToRemove) {
+        Set<Book> equal = new HashSet<>(Arrays.asList(booksToRemove));
+        return removeBooksIf(equal::contains);
+    }
+
+    /**
+     * Copies the rows {@code filter} does not accept into new columns, leaving the columns
+     * of earlier snapshots as they are.
+     */
+    @Override
+    int removeBooksIf(BookFilter filter) {
+        Columns columns = this.columns;
+        boolean[] removed = new boolean[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (filter.apply(columns.book(row))) {
+                removed[row] = true;
+                count++;
+            }
+        }
+        if (count > 0) {
+            compact(removed, size - count);
+        }
+        return count;
+    }
+
+    private synchronized void compact(boolean[] removed, int kept) {
+        int length = Math.max(16, kept);
+        int[] keptTitles = new int[length];
+        int[] keptAuthors = new int[length];
+        int[] keptPublishedOn = new int[length];
+        byte[] keptStates = new byte[length];
+        AtomicLongArray keptReadingDays = new AtomicLongArray(length);
+        int[] keptIds = new int[length];
+        int[] keptRowsById = rowsById.clone();
+        int to = 0;
+        for (int row = 0; row < size; row++) {
+            if (removed[row]) {
+                if (equalBooks != null) {
+                    equalBooks.computeIfPresent(columns.book(row), (equal, count) -> count == 1 ? null : count - 1);
+                }
+                keptRowsById[ids[row]] = REMOVED;
+                continue;
+            }
+            keptTitles[to] = titles[row];
+            keptAuthors[to] = authors[row];
+            keptPublishedOn[to] = publishedOn[row];
+            keptStates[to] = states[row];
+            keptReadingDays.set(to, readingDays.get(row));
+            keptIds[to] = ids[row];
+            keptRowsById[ids[row]] = to;
+            to++;
+        }
+        titles = keptTitles;
+        authors = keptAuthors;
+        publishedOn = keptPublishedOn;
+        states = keptStates;
+        readingDays = keptReadingDays;
+        ids = keptIds;
+        rowsById = keptRowsById;
+        size = kept;
+        publish();
+    }
+
+    private void publish() {
+        columns = new Columns();
+    }
+
+    @Override
+    public Map<Year, List<Book>> groupByPublicationYear() {
+        Columns columns = this.columns;
+        SortedMap<Year, List<Book>> booksByYear = new TreeMap<>();
+        for (int row = 0; row < columns.size; row++) {
+            if (columns.publishedOn[row] != Book.NO_DAY) {
+                booksByYear.computeIfAbsent(PublicationYearIndex.yearOf(columns.publishedEpochDay(row)), year -> new ArrayList<>()).add(columns.get(row));
+            }
+        }
+        return PublicationYearIndex.readOnly(booksByYear);
+    }
+
+    @Override
+    public List<Book> booksPublishedBetween(int fromYear, int toYear) {
+        List<Book> books = new ArrayList<>();
+        groupByPublicationYear().forEach((year, booksOfYear) -> {
+            if (year.getValue() >= fromYear && year.getValue() <= toYear) {
+                books.addAll(booksOfYear);
+            }
+        });
+        return books;
+    }
+
+    @Override
+    long[] readingStateCounts() {
+        Columns columns = this.columns;
+        long[] counts = new long[ReadingState.values().length];
+        counts[ReadingState.READ.ordinal()] = count(columns, ReadingState.READ);
+        counts[ReadingState.IN_PROGRESS.ordinal()] = count(columns, ReadingState.IN_PROGRESS);
+        counts[ReadingState.TO_READ.ordinal()] = columns.size - counts[ReadingState.READ.ordinal()] - counts[ReadingState.IN_PROGRESS.ordinal()];
+        return counts;
+    }
+
+    private int count(Columns columns, ReadingState state) {
+        byte[] states = columns.states;
+        byte wanted = (byte) state.ordinal();
+        IntStream rows = IntStream.range(0, columns.size);
+        return (int) (parallel(columns.size) ? rows.parallel() : rows).filter(row -> states[row] == wanted).count();
+    }
+
+    @Override
+    List<Book> findBooks(String title, BookFilter filter) {
+        Columns columns = this.columns;
+        boolean[] matchingTitles = new boolean[titleDictionary.size()];
+        for (int code = 0; code < matchingTitles.length; code++) {
+            matchingTitles[code] = titleDictionary.decode(code).toLowerCase().contains(title);
+        }
+        BookPublishedDateFilter dateFilter = filter instanceof BookPublishedDateFilter ? (BookPublishedDateFilter) filter : null;
+        List<Book> books = new ArrayList<>();
+        for (int row = 0; row < columns.size; row++) {
+            int code = columns.titles[row];
+            if (code == StringDictionary.NULL_CODE || code >= matchingTitles.length || !matchingTitles[code]) {
+                continue;
+            }
+            if (dateFilter != null) {
+                if (dateFilter.test(columns.publishedEpochDay(row))) {
+                    books.add(columns.get(row));
+                }
+            } else {
+                Book book = columns.get(row);
+                if (filter.apply(book)) {
+                    books.add(book);
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Writes the reading dates of {@code book} to the row of book {@code id}. Takes the lock
+     * that growing and compacting hold while they copy the columns, so no change is lost to
+     * the old ones.
+     */
+    private synchronized void writeReadingDates(int id, Book book) {
+        int row = rowsById[id];
+        if (row != REMOVED) {
+            long days = book.readingDays();
+            readingDays.set(row, days);
+            states[row] = (byte) Book.stateOf(days).ordinal();
+        }
+    }
+
+    /**
+     * Copies the columns into twice as long ones and publishes them, so the published
+     * columns are always the ones reading dates are written to.
+     */
+    private void grow() {
+        int length = (int) Math.min(2L * states.length, Integer.MAX_VALUE - 8);
+        titles = Arrays.copyOf(titles, length);
+        authors = Arrays.copyOf(authors, length);
+        publishedOn = Arrays.copyOf(publishedOn, length);
+        states = Arrays.copyOf(states, length);
+        AtomicLongArray grown = new AtomicLongArray(length);
+        for (int row = 0; row < size; row++) {
+            grown.set(row, readingDays.get(row));
+        }
+        readingDays = grown;
+        ids = Arrays.copyOf(ids, length);
+        publish();
+    }
+
+    /**
+     * The columns up to the size they had when they were published. A view takes its reading
+     * dates from the columns published last, found through the remap, so it is up to date
+     * however old the snapshot it comes from is.
+     */
+    private class Columns extends AbstractList<Book> implements RandomAccess {
+        private final int[] titles = ColumnarBookShelf.this.titles;
+        private final int[] authors = ColumnarBookShelf.this.authors;
+        private final int[] publishedOn = ColumnarBookShelf.this.publishedOn;
+        private final byte[] states = ColumnarBookShelf.this.states;
+        private final AtomicLongArray readingDays = ColumnarBookShelf.this.readingDays;
+        private final int[] ids = ColumnarBookShelf.this.ids;
+        private final int[] rowsById = ColumnarBookShelf.this.rowsById;
+        private final int size = ColumnarBookShelf.this.size;
+
+        @Override
+        public Book get(int index) {
+            Book book = book(index);
+            book.addReadingStateListener(new RowListener(self, ids[index]));
+            return book;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the book in {@code row} without attaching it to the shelf.
+         */
+        Book book(int row) {
+            if (row >= size) {
+                throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+            }
+            LocalDate published = publishedOn[row] == Book.FAR_DAY ? farPublishedOn.get(ids[row]) : Book.toDate(publishedOn[row]);
+            Book book = new Book(titleDictionary.decode(titles[row]), authorDictionary.decode(authors[row]), published);
+            long days = readingDays(row);
+            book.restoreReadingDays(Book.startedDay(days), Book.finishedDay(days));
+            return book;
+        }
+
+        long publishedEpochDay(int row) {
+            int day = publishedOn[row];
+            if (day == Book.FAR_DAY) {
+                return farPublishedOn.get(ids[row]).toEpochDay();
+            }
+            return day == Book.NO_DAY ? Book.NO_DATE : day;
+        }
+
+        /**
+         * Reads the reading dates of {@code row} from the latest columns, or from these if
+         * the book was removed since.
+         */
+        private long readingDays(int row) {
+            Columns latest = columns;
+            int now = latest.rowsById[ids[row]];
+            return now == REMOVED ? readingDays.get(row) : latest.readingDays.get(now);
+        }
+    }
+
+    /**
+     * Listens to the added book and to every view of it on behalf of book {@code id}.
+     */
+    private static class RowListener extends WeakReadingStateListener<ColumnarBookShelf> {
+        private final int id;
+
+        RowListener(WeakReference<ColumnarBookShelf> shelf, int id) {
+            super(shelf);
+            this.id = id;
+        }
+
+        @Override
+        void readingStateChanged(ColumnarBookShelf shelf, Book book, ReadingState from, ReadingState to) {
+            shelf.writeReadingDates(id, book);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package bookstoread;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A {@link BookShelf} that many threads can add to at once without external locking.
+ * Every add first reserves a slot against the capacity with a compare-and-set, so the
+ * capacity holds exactly under contention, and then appends to a lock-free queue.
+ * Queries run over a snapshot of the queue and never block writers. The snapshot is copied
+ * once per change of the shelf and shared by the queries in between.
+ * <p>
+ * Removals take a lock among themselves, but not against adds. A duplicate policy counts
+ * the books by {@link Book#equals(Object)} in a concurrent map; set it before the shelf is
+ * shared.
+ */
+public class ConcurrentBookShelf extends BookShelf {
+
+    private final Queue<Book> books = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private final Object removals = new Object();
+    private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyList());
+    private volatile Map<Book, Integer> equalBooks;
+
+    public ConcurrentBookShelf() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public ConcurrentBookShelf(int capacity) {
+        super(capacity, false);
+    }
+
+    /**
+     * Returns a snapshot of the books on this shelf. Books added after the call are not
+     * part of the returned list. The queue is only copied when it changed since the last
+     * snapshot.
+     */
+    @Override
+    public List<Book> books() {
+        long current = version.get();
+        Snapshot snapshot = this.snapshot;
+        if (snapshot.version != current) {
+            snapshot = new Snapshot(current, Collections.unmodifiableList(new ArrayList<>(books)));
+            this.snapshot = snapshot;
+        }
+        return snapshot.books;
+    }
+
+    @Override
+    void addBooks(Book[] booksToAdd) {
+        Arrays.stream(booksToAdd).forEach(book -> {
+            if (equalBooks != null && !countEqual(book)) {
+                return;
+            }
+            try {
+                reserveSlot();
+            } catch (BookShelfCapacityReached e) {
+                if (equalBooks != null) {
+                    uncountEqual(book);
+                }
+                throw e;
+            }
+            books.add(book);
+            version.incrementAndGet();
+        });
+    }
+
+    @Override
+    void indexEqualBooks() {
+        if (equalBooks == null) {
+            Map<Book, Integer> counts = new ConcurrentHashMap<>();
+            books().forEach(book -> counts.merge(book, 1, Integer::sum));
+            equalBooks = counts;
+        }
+    }
+
+    /**
+     * Counts {@code book} among the books equal to it and tells whether to add it. Under
+     * {@link DuplicatePolicy#SKIP} and {@link DuplicatePolicy#REJECT} only the first of
+     * several threads adding equal books gets to add one.
+     */
+    private boolean countEqual(Book book) {
+        if (duplicatePolicy() == DuplicatePolicy.ALLOW) {
+            equalBooks.merge(book, 1, Integer::sum);
+            return true;
+        }
+        return equalBooks.putIfAbsent(book, 1) == null || admitDuplicate(book);
+    }
+
+    private void uncountEqual(Book book) {
+        equalBooks.computeIfPresent(book, (equal, count) -> count == 1 ? null : count - 1);
+    }
+
+    @Override
+    public boolean contains(Book book) {
+        Map<Book, Integer> equalBooks = this.equalBooks;
+        return equalBooks != null ? equalBooks.containsKey(book) : super.contains(book);
+    }
+
+    @Override
+    int removeBooks(Book[] booksToRemove) {
+        Set<Book> equal = new HashSet<>(Arrays.asList(booksToRemove));
+        return removeBooksIf(equal::contains);
+    }
+
+    /**
+     * Unlinks the matching books from the queue. Books added meanwhile may or may not be
+     * visited, like in any weakly consistent iteration.
+     */
+    @Override
+    int removeBooksIf(BookFilter filter) {
+        synchronized (removals) {
+            int removed = 0;
+            for (Iterator<Book> iterator = books.iterator(); iterator.hasNext(); ) {
+                Book book = iterator.next();
+                if (filter.apply(book)) {
+                    iterator.remove();
+                    if (equalBooks != null) {
+                        uncountEqual(book);
+                    }
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                reserved.addAndGet(-removed);
+                version.incrementAndGet();
+            }
+            return removed;
+        }
+    }
+
+    @Override
+    int size() {
+        return reserved.get();
+    }
+
+    @Override
+    public Map<Year, List<Book>> groupByPublicationYear() {
+        SortedMap<Year, List<Book>> byYear = new TreeMap<>();
+        for (Book book : books()) {
+            if (book.publishedDay() != Book.NO_DAY) {
+                byYear.computeIfAbsent(PublicationYearIndex.yearOf(book.publishedEpochDay()), year -> new ArrayList<>()).add(book);
+            }
+        }
+        return PublicationYearIndex.readOnly(byYear);
+    }
+
+    @Override
+    public List<Book> booksPublishedBetween(int fromYear, int toYear) {
+        return stream(books())
+                .filter(book -> book.getPublishedOn() != null)
+                .filter(book -> book.getPublishedOn().getYear() >= fromYear && book.getPublishedOn().getYear() <= toYear)
+                .sorted(comparingInt(book -> book.getPublishedOn().getYear()))
+                .collect(toList());
+    }
+
+    @Override
+    long[] readingStateCounts() {
+        return stream(books()).collect(
+                () -> new long[ReadingState.values().length],
+                (counts, book) -> counts[book.readingState().ordinal()]++,
+                (counts, others) -> Arrays.setAll(counts, i -> counts[i] + others[i]));
+    }
+
+    private void reserveSlot() {
+        int taken;
+        do {
+            taken = reserved.get();
+            if (taken == capacity()) {
+                throw capacityReached();
+            }
+        } while (!reserved.compareAndSet(taken, taken + 1));
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final List<Book> books;
+
+        Snapshot(long version, List<Book> books) {
+            this.version = version;
+            this.books = books;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bookstoread;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads books lazily from UTF-8 CSV with a header row naming the columns {@code title},
+ * {@code author}, {@code publishedOn} and optionally {@code startedReadingOn} and
+ * {@code finishedReadingOn}. Dates are ISO-8601, empty fields are read as {@code null} and
+ * fields may be quoted. Only one buffer of input is held at a time.
+ * <p>
+ * Authors are interned per reader, so books of the same author share one string. Only the
+ * most recently seen authors are kept, which bounds the memory a catalog of mostly
+ * distinct authors can take. Titles are rarely repeated and are not interned.
+ */
+class CsvBookReader implements Iterator<Book> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INTERNED_AUTHORS = 4096;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> record = new ArrayList<>();
+    private final Map<String, String> authors = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > INTERNED_AUTHORS;
+        }
+    };
+    private boolean endOfInput;
+    private long records;
+
+    private int title = -1;
+    private int author = -1;
+    private int publishedOn = -1;
+    private int startedReadingOn = -1;
+    private int finishedReadingOn = -1;
+    private Book next;
+
+    CsvBookReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        chars.flip();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readBook();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Book next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Book book = next;
+        next = null;
+        return book;
+    }
+
+    long records() {
+        return records;
+    }
+
+    private Book readBook() throws IOException {
+        if (records == 0) {
+            readHeader();
+        }
+        do {
+            if (!readRecord()) {
+                return null;
+            }
+        } while (record.size() == 1 && record.get(0) == null);
+        try {
+            Book book = new Book(column(title), intern(column(author)), date(publishedOn));
+            book.restoreReadingDays(Book.toDay(date(startedReadingOn)), Book.toDay(date(finishedReadingOn)));
+            return book;
+        } catch (DateTimeParseException e) {
+            throw new IOException("Malformed date in catalog record " + records + ": " + e.getParsedString(), e);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (!readRecord()) {
+            throw new IOException("Catalog is empty, expected a header row");
+        }
+        for (int i = 0; i < record.size(); i++) {
+            String name = record.get(i) == null ? "" : record.get(i).trim();
+            if (name.equals("title")) title = i;
+            else if (name.equals("author")) author = i;
+            else if (name.equals("publishedOn")) publishedOn = i;
+            else if (name.equals("startedReadingOn")) startedReadingOn = i;
+            else if (name.equals("finishedReadingOn")) finishedReadingOn = i;
+        }
+        if (title < 0 || author < 0 || publishedOn < 0) {
+            throw new IOException("Catalog header must name title, author and publishedOn columns but was " + record);
+        }
+    }
+
+    private String column(int index) {
+        return index < 0 || index >= record.size() ? null : record.get(index);
+    }
+
+    private String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        String interned = authors.putIfAbsent(s, s);
+        return interned != null ? interned : s;
+    }
+
+    private LocalDate date(int index) {
+        String value = column(index);
+        return value == null ? null : LocalDate.parse(value.trim());
+    }
+
+    private boolean readRecord() throws IOException {
+        record.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        boolean started = false;
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                if (quoted) {
+                    throw new IOException("Unterminated quoted field in catalog record " + (records + 1));
+                }
+                if (!started) {
+                    return false;
+                }
+                endField(wasQuoted);
+                records++;
+                return true;
+            }
+            char c = chars.get();
+            started = true;
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (peek() == '"') {
+                    chars.get();
+                    field.append('"');
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                endField(wasQuoted);
+                wasQuoted = false;
+            } else if (c == '\n') {
+                endField(wasQuoted);
+                records++;
+                return true;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+    }
+
+    private void endField(boolean wasQuoted) {
+        record.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+        field.setLength(0);
+    }
+
+    private int peek() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !endOfInput) {
+            endOfInput = channel.read(bytes) < 0;
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,19 @@
+package bookstoread;
+
+/**
+ * What {@link BookShelf#add(Book...)} does with a book equal to one already on the shelf.
+ */
+public enum DuplicatePolicy {
+    /**
+     * Adds the book again.
+     */
+    ALLOW,
+    /**
+     * Leaves the book out and adds the remaining ones.
+     */
+    SKIP,
+    /**
+     * Throws {@link BookAlreadyOnShelf}. Books before it in the same call stay added.
+     */
+    REJECT
+}
@@ -0,0 +1,274 @@
+package bookstoread;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A {@link BookShelf} whose adds, removals and reading date changes survive a restart.
+ * A directory holds generations of files: {@code snapshot.<n>}, a
+ * {@link BookShelfSnapshot} of the shelf, and {@code log.<n>}, a {@link WriteAheadLog} of
+ * what happened since generation {@code n} began. Opening the directory reads the newest
+ * snapshot and replays the logs from its generation on, then starts a new generation.
+ * {@link #compact()} starts a new generation and writes its snapshot, after which older
+ * files are deleted.
+ * <p>
+ * Changes are logged after they are applied to the shelf and reach the disk with the next
+ * group commit, within the commit interval; {@link #sync()} waits for them. Adds and
+ * removals go through this class, which is the single writer of {@link #shelf()}. Reading
+ * dates are logged whichever thread changes them on the books.
+ */
+public class DurableBookShelf implements Closeable {
+
+    static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+    private static final String SNAPSHOT = "snapshot.";
+    private static final String LOG = "log.";
+    private static final String TEMPORARY = ".tmp";
+
+    private final Path directory;
+    private final BookShelf shelf;
+    private final long commitIntervalMillis;
+    private final Map<Book, Long> numbers = new IdentityHashMap<>();
+    private final ReadingStateListener readingListener = (book, from, to) -> readingDatesChanged(book);
+    private long nextNumber;
+    private long generation;
+    private volatile WriteAheadLog log;
+    private boolean closed;
+
+    private DurableBookShelf(Path directory, BookShelf shelf, long generation, long commitIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.shelf = shelf;
+        this.commitIntervalMillis = commitIntervalMillis;
+        shelf.restrictWritesTo(this);
+        startGeneration(generation);
+        numbers.keySet().forEach(book -> book.addReadingStateListener(readingListener));
+    }
+
+    public static DurableBookShelf open(Path directory) throws IOException {
+        return open(directory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens the shelf stored in {@code directory}, creating an empty one of
+     * {@code capacity} if there is none.
+     */
+    public static DurableBookShelf open(Path directory, int capacity) throws IOException {
+        return open(directory, capacity, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    public static DurableBookShelf open(Path directory, int capacity, long commitIntervalMillis) throws IOException {
+        if (commitIntervalMillis < 0) {
+            throw new IllegalArgumentException("Commit interval must not be negative but was " + commitIntervalMillis);
+        }
+        Files.createDirectories(directory);
+        Set<Long> snapshots = new TreeSet<>();
+        Set<Long> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY)) {
+                    Files.delete(file);
+                } else if (generation(name, SNAPSHOT) >= 0) {
+                    snapshots.add(generation(name, SNAPSHOT));
+                } else if (generation(name, LOG) >= 0) {
+                    logs.add(generation(name, LOG));
+                }
+            }
+        }
+        long snapshot = snapshots.isEmpty() ? -1 : Collections.max(snapshots);
+        BookShelf shelf = snapshot < 0 ? null : BookShelfSnapshot.read(directory.resolve(SNAPSHOT + snapshot));
+        long last = snapshot;
+        for (long generation : logs) {
+            if (generation >= snapshot) {
+                Path log = directory.resolve(LOG + generation);
+                if (shelf == null) {
+                    shelf = new BookShelf(WriteAheadLog.capacity(log));
+                }
+                WriteAheadLog.replay(log, shelf);
+                last = generation;
+            }
+        }
+        if (shelf == null) {
+            shelf = new BookShelf(capacity);
+        }
+        return new DurableBookShelf(directory, shelf, last + 1, commitIntervalMillis);
+    }
+
+    /**
+     * Returns the generation of the file called {@code name} if it starts with
+     * {@code prefix}, and -1 for any other file.
+     */
+    private static long generation(String name, String prefix) {
+        if (!name.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The shelf to query and to configure indexes on. Adding or removing books on it throws
+     * {@link UnsupportedOperationException}; they are added and removed through this class,
+     * which logs them.
+     */
+    public BookShelf shelf() {
+        return shelf;
+    }
+
+    public synchronized void add(Book... booksToAdd) throws BookShelfCapacityReached {
+        requireOpen();
+        int before = shelf.size();
+        try {
+            shelf.add(booksToAdd);
+        } finally {
+            List<Book> books = shelf.books();
+            for (int i = before; i < books.size(); i++) {
+                logAdded(books.get(i));
+            }
+        }
+    }
+
+    /**
+     * Numbers and listens to the book before logging it, so a reading date changed on
+     * another thread meanwhile is logged after the book.
+     */
+    private void logAdded(Book book) {
+        Long number = numbers.get(book);
+        if (number != null) {
+            log.addSame(number);
+            return;
+        }
+        numbers.put(book, nextNumber++);
+        book.addReadingStateListener(readingListener);
+        log.add(book);
+    }
+
+    /**
+     * Removes every book equal to one of {@code booksToRemove}, like
+     * {@link BookShelf#remove(Book...)}.
+     */
+    public int remove(Book... booksToRemove) {
+        Set<Book> equal = new HashSet<>(Arrays.asList(booksToRemove));
+        return removeIf(equal::contains);
+    }
+
+    public synchronized int removeIf(BookFilter filter) {
+        requireOpen();
+        Set<Book> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Book book : shelf.books()) {
+            if (!removed.contains(book) && filter.apply(book)) {
+                removed.add(book);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        int count = shelf.removeIf(removed::contains);
+        long[] removedNumbers = new long[removed.size()];
+        int i = 0;
+        for (Book book : removed) {
+            book.removeReadingStateListener(readingListener);
+            removedNumbers[i++] = numbers.remove(book);
+        }
+        log.remove(removedNumbers);
+        return count;
+    }
+
+    private synchronized void readingDatesChanged(Book book) {
+        Long number = numbers.get(book);
+        if (number != null && !closed) {
+            long days = book.readingDays();
+            log.reading(number, Book.startedDay(days), Book.finishedDay(days));
+        }
+    }
+
+    /**
+     * Waits until every change made so far is on disk.
+     */
+    public void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Starts a new generation and writes its snapshot, then deletes the files of older
+     * generations. The books and their reading dates are captured when the generation
+     * starts and the snapshot is written from that capture, so adds, removals and reading
+     * dates changed meanwhile are only in the new generation's log, which replays them over
+     * the snapshot.
+     */
+    public void compact() throws IOException {
+        long compacted;
+        List<Book> books;
+        int[] readingDays;
+        synchronized (this) {
+            requireOpen();
+            compacted = generation + 1;
+            startGeneration(compacted);
+            books = shelf.books();
+            readingDays = BookShelfSnapshot.readingDays(books);
+        }
+        BookShelfSnapshot.write(shelf.capacity(), books, readingDays, directory.resolve(SNAPSHOT + compacted));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long older = Math.max(generation(name, SNAPSHOT), generation(name, LOG));
+                if (older >= 0 && older < compacted) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the current log once it is on disk and starts {@code generation} with the
+     * books numbered by their position on the shelf, which is how replay numbers them.
+     */
+    private void startGeneration(long generation) throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        numbers.clear();
+        long position = 0;
+        for (Book book : shelf.books()) {
+            numbers.putIfAbsent(book, position++);
+        }
+        nextNumber = position;
+        log = WriteAheadLog.create(directory.resolve(LOG + generation), shelf.capacity(), commitIntervalMillis);
+        this.generation = generation;
+    }
+
+    /**
+     * Syncs and closes the log. The shelf stays usable and takes adds and removals directly,
+     * but is no longer durable.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        shelf.restrictWritesTo(null);
+        numbers.keySet().forEach(book -> book.removeReadingStateListener(readingListener));
+        log.close();
+    }
+
+    private void requireOpen() {
+        if (closed) {
+            throw new IllegalStateException("The durable shelf is closed");
+        }
+    }
+}
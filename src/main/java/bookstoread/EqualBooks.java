@@ -0,0 +1,88 @@
+package bookstoread;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The slots of a shelf's books by {@link Book#equals(Object)}. A book that is on the shelf
+ * once maps to its slot and only duplicates get a {@link Slots} list, so the index costs one
+ * map entry per distinct book.
+ */
+class EqualBooks {
+
+    private static final int[] NO_SLOTS = {};
+
+    private final Map<Book, Object> books = new HashMap<>();
+
+    void add(Book book, int slot) {
+        books.merge(book, slot, EqualBooks::append);
+    }
+
+    boolean contains(Book book) {
+        return books.containsKey(book);
+    }
+
+    /**
+     * Removes and returns the slots of the books equal to {@code book}.
+     */
+    int[] remove(Book book) {
+        Object equal = books.remove(book);
+        if (equal == null) {
+            return NO_SLOTS;
+        }
+        return equal instanceof Slots ? ((Slots) equal).toArray() : new int[]{(Integer) equal};
+    }
+
+    /**
+     * Removes the book in {@code slot}, leaving other books equal to it in place.
+     */
+    void removeSlot(Book book, int slot) {
+        Object equal = books.get(book);
+        if (equal instanceof Slots) {
+            Slots slots = (Slots) equal;
+            slots.remove(slot);
+            if (slots.size == 0) {
+                books.remove(book);
+            }
+        } else if (equal != null && (Integer) equal == slot) {
+            books.remove(book);
+        }
+    }
+
+    private static Object append(Object equal, Object slot) {
+        if (equal instanceof Slots) {
+            ((Slots) equal).add((Integer) slot);
+            return equal;
+        }
+        Slots slots = new Slots();
+        slots.add((Integer) equal);
+        slots.add((Integer) slot);
+        return slots;
+    }
+
+    private static class Slots {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(slots, size);
+        }
+    }
+}
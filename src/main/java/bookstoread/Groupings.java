@@ -0,0 +1,177 @@
+package bookstoread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Groupings a shelf keeps materialized. Registered groupings are updated in place as books
+ * are added or change reading state; ad-hoc groupings are cached per classifier together
+ * with the snapshot they were made from, and only handed out again for that snapshot. Not
+ * thread-safe: the shelf guards it with its lock for derived views.
+ */
+class Groupings {
+
+    private static final int CACHED_GROUPINGS = 16;
+    private static final int REBUILD_RATIO = 8;
+
+    private final Map<String, Grouping<?>> registered = new HashMap<>();
+    private final Map<Function<Book, ?>, Cached> cache = new LinkedHashMap<Function<Book, ?>, Cached>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Function<Book, ?>, Cached> eldest) {
+            return size() > CACHED_GROUPINGS;
+        }
+    };
+
+    <K> void register(String name, Function<Book, K> fx, List<Book> books) {
+        Grouping<K> grouping = new Grouping<>(fx);
+        books.forEach(grouping::add);
+        registered.put(name, grouping);
+    }
+
+    @SuppressWarnings("unchecked")
+    <K> Map<K, List<Book>> registered(String name) {
+        Grouping<K> grouping = (Grouping<K>) registered.get(name);
+        if (grouping == null) {
+            throw new IllegalArgumentException("No grouping registered as " + name);
+        }
+        return grouping.view();
+    }
+
+    /**
+     * Returns the grouping of {@code books} by {@code fx}, made by {@code grouping} unless
+     * it was made from the same snapshot before.
+     */
+    @SuppressWarnings("unchecked")
+    <K> Map<K, List<Book>> cached(Function<Book, K> fx, List<Book> books, Supplier<Map<K, List<Book>>> grouping) {
+        Cached cached = cache.get(fx);
+        if (cached == null || cached.books != books) {
+            cached = new Cached(books, grouping.get());
+            cache.put(fx, cached);
+        }
+        return (Map<K, List<Book>>) cached.grouping;
+    }
+
+    void added(Book book) {
+        registered.values().forEach(grouping -> grouping.add(book));
+        cache.clear();
+    }
+
+    void removed(Book book) {
+        registered.values().forEach(grouping -> grouping.remove(book));
+        cache.clear();
+    }
+
+    void readingStateChanged(Book book) {
+        registered.values().forEach(grouping -> grouping.reclassify(book));
+        cache.clear();
+    }
+
+    /**
+     * Brings registered groupings up to date after {@code books} changed reading state
+     * together. When they are a large part of the shelf each grouping is rebuilt in shelf
+     * order, which is cheaper than moving the books one by one.
+     */
+    void readingStatesChanged(Collection<Book> books, List<Book> shelf) {
+        if (books.size() > shelf.size() / REBUILD_RATIO) {
+            registered.replaceAll((name, grouping) -> grouping.rebuild(shelf));
+        } else {
+            books.forEach(book -> registered.values().forEach(grouping -> grouping.reclassify(book)));
+        }
+        cache.clear();
+    }
+
+    private static class Cached {
+        private final List<Book> books;
+        private final Map<?, List<Book>> grouping;
+
+        Cached(List<Book> books, Map<?, List<Book>> grouping) {
+            this.books = books;
+            this.grouping = grouping;
+        }
+    }
+
+    private static class Grouping<K> {
+        private final Function<Book, K> classifier;
+        private final Map<K, BookList> groups = new HashMap<>();
+        private final Map<Book, K> keys = new IdentityHashMap<>();
+        private final Map<Book, Integer> copies = new IdentityHashMap<>();
+        private Map<K, List<Book>> view;
+
+        Grouping(Function<Book, K> classifier) {
+            this.classifier = classifier;
+        }
+
+        void add(Book book) {
+            K key = classifier.apply(book);
+            if (keys.put(book, key) != null) {
+                copies.merge(book, 2, (count, one) -> count + 1);
+            }
+            groups.computeIfAbsent(key, k -> new BookList()).append(book);
+            view = null;
+        }
+
+        void remove(Book book) {
+            if (!keys.containsKey(book)) {
+                return;
+            }
+            K key = keys.remove(book);
+            copies.remove(book);
+            groups.get(key).removeInstances(book);
+            view = null;
+        }
+
+        /**
+         * Moves a book whose key changed to its new group. The book goes to the end of the
+         * new group rather than to its shelf position.
+         */
+        void reclassify(Book book) {
+            if (!keys.containsKey(book)) {
+                return;
+            }
+            K before = keys.get(book);
+            K after = classifier.apply(book);
+            if (Objects.equals(before, after)) {
+                return;
+            }
+            groups.get(before).removeInstances(book);
+            int moved = copies.getOrDefault(book, 1);
+            BookList to = groups.computeIfAbsent(after, k -> new BookList());
+            for (int i = 0; i < moved; i++) {
+                to.append(book);
+            }
+            keys.put(book, after);
+            view = null;
+        }
+
+        Grouping<K> rebuild(List<Book> books) {
+            Grouping<K> grouping = new Grouping<>(classifier);
+            books.forEach(grouping::add);
+            return grouping;
+        }
+
+        /**
+         * Returns a read-only copy of the groups, so callers can hold it while the shelf
+         * changes. Groups left empty by removals are dropped here.
+         */
+        Map<K, List<Book>> view() {
+            if (view == null) {
+                groups.values().removeIf(BookList::isEmpty);
+                Map<K, List<Book>> copy = new HashMap<>();
+                groups.forEach((key, books) -> copy.put(key, Collections.unmodifiableList(new ArrayList<>(books))));
+                view = Collections.unmodifiableMap(copy);
+            }
+            return view;
+        }
+    }
+}
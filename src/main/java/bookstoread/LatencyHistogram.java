@@ -0,0 +1,137 @@
+package bookstoread;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. Values below 8 get a bucket each; above
+ * that every power of two is split into 8 buckets, so a percentile read from the histogram
+ * is at most 12.5% above the latency it stands for, whatever its magnitude.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final long createdAt = System.nanoTime();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Records a call that ended with an exception. Its latency counts like any other.
+     */
+    public void recordFailure(long nanos) {
+        record(nanos);
+        failures.increment();
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, totalNanos.sum(), maxNanos.get(), failures.sum(), System.nanoTime() - createdAt);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest latency that falls into {@code bucket}.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long first = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return first + (1L << shift) - 1;
+    }
+
+    /**
+     * The state of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long failures;
+        private final long elapsedNanos;
+
+        Snapshot(long[] counts, long totalNanos, long maxNanos, long failures, long elapsedNanos) {
+            this.counts = counts;
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long failures() {
+            return failures;
+        }
+
+        public long maxNanos() {
+            return maxNanos;
+        }
+
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Calls per second since the histogram was created.
+         */
+        public double throughput() {
+            return elapsedNanos <= 0 ? 0 : count * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the latency that {@code percentile} percent of the calls did not exceed,
+         * rounded up to the end of its bucket and capped at the largest recorded latency.
+         */
+        public long percentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100 but was " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(highestValue(bucket), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package bookstoread;
+
+/**
+ * JMX view of a {@link LatencyHistogram}. Every attribute reads a fresh snapshot.
+ */
+public interface LatencyMXBean {
+
+    long getCount();
+
+    long getFailures();
+
+    double getThroughput();
+
+    double getMeanNanos();
+
+    long getMaxNanos();
+
+    long get50thPercentileNanos();
+
+    long get90thPercentileNanos();
+
+    long get99thPercentileNanos();
+
+    long get999thPercentileNanos();
+}
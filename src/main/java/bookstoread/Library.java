@@ -0,0 +1,174 @@
+package bookstoread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Books partitioned across several shelves, its shards. A book goes to the shard its
+ * partitioner picks, by default by hash code, so equal books share a shard. Queries run on
+ * all shards in parallel and their results are merged: arrangements by a k-way merge,
+ * groupings by key and progress by summing the book counts of the shards.
+ * <p>
+ * Every shard enforces its own capacity, so adding a book fails with
+ * {@link BookShelfCapacityReached} when its shard is full even if others have room.
+ */
+public class Library {
+
+    private final List<BookShelf> shards;
+    private final ToIntFunction<Book> partitioner;
+
+    public Library(int shards) {
+        this(shards, Integer.MAX_VALUE);
+    }
+
+    public Library(int shards, int shardCapacity) {
+        this(shelves(shards, shardCapacity), Library::hash);
+    }
+
+    /**
+     * Creates a library over {@code shards}. A book goes to the shard at
+     * {@code partitioner} modulo the number of shards, so a partitioner returning shard
+     * indexes partitions by range.
+     */
+    public Library(List<BookShelf> shards, ToIntFunction<Book> partitioner) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A library needs at least one shard");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.partitioner = partitioner;
+    }
+
+    private static List<BookShelf> shelves(int shards, int shardCapacity) {
+        List<BookShelf> shelves = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            shelves.add(new BookShelf(shardCapacity));
+        }
+        return shelves;
+    }
+
+    private static int hash(Book book) {
+        int h = book.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    public List<BookShelf> shards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * Adds each book to its shard. Shards are written in parallel, so when one of them is
+     * full, books for other shards may already have been added.
+     */
+    public void add(Book... booksToAdd) throws BookShelfCapacityReached {
+        List<List<Book>> partitions = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Book book : booksToAdd) {
+            partitions.get(Math.floorMod(partitioner.applyAsInt(book), shards.size())).add(book);
+        }
+        IntStream.range(0, shards.size()).parallel()
+                .filter(shard -> !partitions.get(shard).isEmpty())
+                .forEach(shard -> shards.get(shard).add(partitions.get(shard).toArray(new Book[0])));
+    }
+
+    public List<Book> books() {
+        List<Book> books = new ArrayList<>();
+        shards.forEach(shard -> books.addAll(shard.books()));
+        return Collections.unmodifiableList(books);
+    }
+
+    public List<Book> arrange() {
+        return arrange(Comparator.naturalOrder());
+    }
+
+    /**
+     * Arranges every shard by {@code comparator} and merges the results. Books comparing
+     * equal keep the order of their shards.
+     */
+    public List<Book> arrange(Comparator<Book> comparator) {
+        return merge(scatter(shard -> shard.arrange(comparator)), comparator);
+    }
+
+    public <K> Map<K, List<Book>> groupBy(Function<Book, K> fx) {
+        Map<K, List<Book>> merged = new HashMap<>();
+        for (Map<K, List<Book>> groups : scatter(shard -> shard.groupBy(fx))) {
+            groups.forEach((key, books) -> merged.computeIfAbsent(key, k -> new ArrayList<>()).addAll(books));
+        }
+        merged.replaceAll((key, books) -> Collections.unmodifiableList(books));
+        return Collections.unmodifiableMap(merged);
+    }
+
+    public Progress progress() {
+        long[] counts = new long[ReadingState.values().length];
+        for (long[] shardCounts : scatter(BookShelf::readingStateCounts)) {
+            for (int state = 0; state < counts.length; state++) {
+                counts[state] += shardCounts[state];
+            }
+        }
+        return Progress.of(counts);
+    }
+
+    public List<Book> findBooksByTitle(String title) {
+        return findBooksByTitle(title, b -> true);
+    }
+
+    public List<Book> findBooksByTitle(String title, BookFilter filter) {
+        List<Book> books = new ArrayList<>();
+        scatter(shard -> shard.findBooksByTitle(title, filter)).forEach(books::addAll);
+        return books;
+    }
+
+    private <R> List<R> scatter(Function<BookShelf, R> query) {
+        return shards.parallelStream().map(query).collect(toList());
+    }
+
+    private static List<Book> merge(List<List<Book>> sorted, Comparator<Book> comparator) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>((a, b) -> {
+            int order = comparator.compare(a.head(), b.head());
+            return order != 0 ? order : Integer.compare(a.shard, b.shard);
+        });
+        int size = 0;
+        for (int shard = 0; shard < sorted.size(); shard++) {
+            List<Book> books = sorted.get(shard);
+            size += books.size();
+            if (!books.isEmpty()) {
+                heads.add(new Cursor(books, shard));
+            }
+        }
+        List<Book> merged = new ArrayList<>(size);
+        while (!heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            merged.add(cursor.head());
+            if (++cursor.position < cursor.books.size()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static class Cursor {
+        private final List<Book> books;
+        private final int shard;
+        private int position;
+
+        Cursor(List<Book> books, int shard) {
+            this.books = books;
+            this.shard = shard;
+        }
+
+        Book head() {
+            return books.get(position);
+        }
+    }
+}
@@ -18,6 +18,20 @@ public class Progress {
         return new Progress(0, 0, 0);
     }
 
+    /**
+     * Computes the percentages from book counts indexed by {@link ReadingState} ordinal.
+     */
+    static Progress of(long[] counts) {
+        long books = counts[ReadingState.TO_READ.ordinal()] + counts[ReadingState.IN_PROGRESS.ordinal()] + counts[ReadingState.READ.ordinal()];
+        if (books == 0) {
+            return notStarted();
+        }
+        return new Progress(
+                (int) (counts[ReadingState.READ.ordinal()] * 100 / books),
+                (int) (counts[ReadingState.TO_READ.ordinal()] * 100 / books),
+                (int) (counts[ReadingState.IN_PROGRESS.ordinal()] * 100 / books));
+    }
+
     public int completed() {
         return this.completed;
     }
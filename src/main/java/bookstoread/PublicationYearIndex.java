@@ -0,0 +1,87 @@
+package bookstoread;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Books bucketed by publication year in a sorted map. Year range queries visit only the
+ * buckets in range. The grouping by year handed out to callers is made from the buckets
+ * and holds a read-only copy of each, so it never changes under them. A copy is reused
+ * until its year changes, so regrouping after a change copies one year. Not thread-safe:
+ * the shelf guards it with its lock for derived views.
+ */
+class PublicationYearIndex {
+
+    private final NavigableMap<Year, BookList> years = new TreeMap<>();
+    private final Map<Year, List<Book>> copies = new HashMap<>();
+    private SortedMap<Year, List<Book>> byYear;
+
+    void add(Book book) {
+        if (book.publishedDay() != Book.NO_DAY) {
+            Year year = yearOf(book.publishedEpochDay());
+            years.computeIfAbsent(year, y -> new BookList()).append(book);
+            changed(year);
+        }
+    }
+
+    void remove(Book book) {
+        if (book.publishedDay() != Book.NO_DAY) {
+            Year year = yearOf(book.publishedEpochDay());
+            BookList books = years.get(year);
+            if (books != null) {
+                books.removeInstances(book);
+                changed(year);
+            }
+        }
+    }
+
+    private void changed(Year year) {
+        copies.remove(year);
+        byYear = null;
+    }
+
+    SortedMap<Year, List<Book>> byYear() {
+        if (byYear == null) {
+            SortedMap<Year, List<Book>> byYear = new TreeMap<>();
+            years.forEach((year, books) -> {
+                List<Book> copy = copies.computeIfAbsent(year, y -> Collections.unmodifiableList(new ArrayList<>(books)));
+                if (!copy.isEmpty()) {
+                    byYear.put(year, copy);
+                }
+            });
+            this.byYear = Collections.unmodifiableSortedMap(byYear);
+        }
+        return byYear;
+    }
+
+    List<Book> between(int fromYear, int toYear) {
+        int from = Math.max(fromYear, Year.MIN_VALUE);
+        int to = Math.min(toYear, Year.MAX_VALUE);
+        if (from > to) {
+            return Collections.emptyList();
+        }
+        List<Book> books = new ArrayList<>();
+        years.subMap(Year.of(from), true, Year.of(to), true).values().forEach(books::addAll);
+        return books;
+    }
+
+    static Year yearOf(long day) {
+        return Year.of(LocalDate.ofEpochDay(day).getYear());
+    }
+
+    /**
+     * Makes {@code byYear} and its lists read-only, the way {@link #byYear()} hands them out.
+     */
+    static SortedMap<Year, List<Book>> readOnly(SortedMap<Year, List<Book>> byYear) {
+        byYear.replaceAll((year, books) -> Collections.unmodifiableList(books));
+        return Collections.unmodifiableSortedMap(byYear);
+    }
+}
@@ -0,0 +1,50 @@
+package bookstoread;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-state book counts of a shelf. The shelf counts books as they are added and as they
+ * report reading state transitions, so progress never needs a scan. The counts are atomic,
+ * so transitions may be reported from any thread without the shelf's lock.
+ */
+class ReadingCounters {
+
+    private final AtomicInteger booksRead = new AtomicInteger();
+    private final AtomicInteger booksInProgress = new AtomicInteger();
+
+    void add(ReadingState state) {
+        count(state, 1);
+    }
+
+    void remove(ReadingState state) {
+        count(state, -1);
+    }
+
+    void readingStateChanged(ReadingState from, ReadingState to) {
+        if (from != to) {
+            count(from, -1);
+            count(to, 1);
+        }
+    }
+
+    /**
+     * Returns the number of books per {@link ReadingState} ordinal on a shelf of {@code books}.
+     */
+    long[] counts(int books) {
+        long booksRead = this.booksRead.get();
+        long booksInProgress = this.booksInProgress.get();
+        long[] counts = new long[ReadingState.values().length];
+        counts[ReadingState.TO_READ.ordinal()] = books - booksRead - booksInProgress;
+        counts[ReadingState.IN_PROGRESS.ordinal()] = booksInProgress;
+        counts[ReadingState.READ.ordinal()] = booksRead;
+        return counts;
+    }
+
+    private void count(ReadingState state, int delta) {
+        if (state == ReadingState.READ) {
+            booksRead.addAndGet(delta);
+        } else if (state == ReadingState.IN_PROGRESS) {
+            booksInProgress.addAndGet(delta);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package bookstoread;
+
+enum ReadingState {
+    TO_READ, IN_PROGRESS, READ
+}
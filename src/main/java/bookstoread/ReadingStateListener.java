@@ -0,0 +1,9 @@
+package bookstoread;
+
+/**
+ * Told about every change of a book's reading dates. {@code from} and {@code to} are equal
+ * when a date changed without moving the book to another reading state.
+ */
+interface ReadingStateListener {
+    void readingStateChanged(Book book, ReadingState from, ReadingState to);
+}
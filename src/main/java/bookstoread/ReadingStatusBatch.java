@@ -0,0 +1,100 @@
+package bookstoread;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reading date changes that {@link BookShelf#apply(ReadingStatusBatch)} applies in one pass
+ * over a shelf. A change names either a book, and then applies to every book on the shelf
+ * equal to it, or a filter. The changes a book receives take effect in the order they were
+ * added to the batch.
+ */
+public class ReadingStatusBatch {
+
+    private final Map<Book, List<Change>> byBook = new HashMap<>();
+    private final List<Change> byFilter = new ArrayList<>();
+    private int size;
+
+    public ReadingStatusBatch startedReadingOn(Book book, LocalDate startedOn) {
+        return add(book, new Change(size, null, false, startedOn));
+    }
+
+    public ReadingStatusBatch finishedReadingOn(Book book, LocalDate finishedOn) {
+        return add(book, new Change(size, null, true, finishedOn));
+    }
+
+    public ReadingStatusBatch startedReadingOn(BookFilter filter, LocalDate startedOn) {
+        byFilter.add(new Change(size++, filter, false, startedOn));
+        return this;
+    }
+
+    public ReadingStatusBatch finishedReadingOn(BookFilter filter, LocalDate finishedOn) {
+        byFilter.add(new Change(size++, filter, true, finishedOn));
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private ReadingStatusBatch add(Book book, Change change) {
+        byBook.computeIfAbsent(book, b -> new ArrayList<>(2)).add(change);
+        size++;
+        return this;
+    }
+
+    /**
+     * Applies the changes for {@code book} and tells whether any of them changed a date.
+     */
+    boolean applyTo(Book book) {
+        List<Change> own = byBook.isEmpty() ? Collections.emptyList() : byBook.getOrDefault(book, Collections.emptyList());
+        boolean changed = false;
+        int i = 0;
+        int j = 0;
+        while (i < own.size() || j < byFilter.size()) {
+            Change next = j == byFilter.size() || i < own.size() && own.get(i).sequence < byFilter.get(j).sequence
+                    ? own.get(i++)
+                    : byFilter.get(j++);
+            changed |= next.applyTo(book);
+        }
+        return changed;
+    }
+
+    private static class Change {
+        private final int sequence;
+        private final BookFilter filter;
+        private final boolean finished;
+        private final LocalDate date;
+        private final int day;
+
+        Change(int sequence, BookFilter filter, boolean finished, LocalDate date) {
+            this.sequence = sequence;
+            this.filter = filter;
+            this.finished = finished;
+            this.date = date;
+            this.day = Book.toDay(date);
+        }
+
+        boolean applyTo(Book book) {
+            if (filter != null && !filter.apply(book)) {
+                return false;
+            }
+            if (finished) {
+                if (book.finishedDay() == day) {
+                    return false;
+                }
+                book.finishedReadingOn(date);
+            } else {
+                if (book.startedDay() == day) {
+                    return false;
+                }
+                book.startedReadingOn(date);
+            }
+            return true;
+        }
+    }
+}
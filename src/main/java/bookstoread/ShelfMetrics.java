@@ -0,0 +1,219 @@
+package bookstoread;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency histograms for the operations of the shelves it is attached to with
+ * {@link BookShelf#withMetrics(ShelfMetrics)}, and for filters wrapped with
+ * {@link #instrument(String, BookFilter)}. Recording is lock-free, so one instance may be
+ * shared by several shelves, for instance by the shards of a {@link Library}.
+ */
+public class ShelfMetrics {
+
+    public enum Operation {
+        ADD, REMOVE, ARRANGE, GROUP_BY, PROGRESS, FIND_BOOKS_BY_TITLE
+    }
+
+    private final LatencyHistogram[] operations = new LatencyHistogram[Operation.values().length];
+    private final Map<String, LatencyHistogram> filters = new ConcurrentHashMap<>();
+    private final LongAdder capacityReached = new LongAdder();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public ShelfMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram.Snapshot snapshot(Operation operation) {
+        return operations[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * Returns the snapshot of the filter instrumented under {@code name}, or {@code null}
+     * when there is none.
+     */
+    public LatencyHistogram.Snapshot filterSnapshot(String name) {
+        LatencyHistogram histogram = filters.get(name);
+        return histogram == null ? null : histogram.snapshot();
+    }
+
+    /**
+     * Number of times a shelf refused a book with {@link BookShelfCapacityReached}.
+     */
+    public long capacityReached() {
+        return capacityReached.sum();
+    }
+
+    /**
+     * Wraps {@code filter} so that every application is timed under {@code name}. Filters
+     * instrumented under the same name share a histogram.
+     */
+    public BookFilter instrument(String name, BookFilter filter) {
+        LatencyHistogram histogram = filters.computeIfAbsent(name, key -> new LatencyHistogram());
+        return book -> {
+            long start = System.nanoTime();
+            boolean passed;
+            try {
+                passed = filter.apply(book);
+            } catch (RuntimeException | Error e) {
+                histogram.recordFailure(System.nanoTime() - start);
+                throw e;
+            }
+            histogram.record(System.nanoTime() - start);
+            return passed;
+        };
+    }
+
+    <T> T time(Operation operation, Supplier<T> call) {
+        LatencyHistogram histogram = operations[operation.ordinal()];
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            histogram.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
+        histogram.record(System.nanoTime() - start);
+        return result;
+    }
+
+    void time(Operation operation, Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    void capacityReachedFired() {
+        capacityReached.increment();
+    }
+
+    /**
+     * Registers one MXBean per operation and per instrumented filter with the platform
+     * MBean server, named {@code bookstoread:type=ShelfMetrics,name=<name>,operation=<op>}
+     * and {@code ...,filter=<filter>}, plus one for the capacity counter. Filters
+     * instrumented later are not registered.
+     */
+    public synchronized ShelfMetrics registerMBeans(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String prefix = "bookstoread:type=ShelfMetrics,name=" + ObjectName.quote(name);
+        try {
+            register(server, new ObjectName(prefix), new CapacityView(capacityReached));
+            for (Operation operation : Operation.values()) {
+                String key = operation.name().toLowerCase(Locale.ROOT);
+                register(server, new ObjectName(prefix + ",operation=" + key), new LatencyView(operations[operation.ordinal()]));
+            }
+            for (Map.Entry<String, LatencyHistogram> filter : filters.entrySet()) {
+                register(server, new ObjectName(prefix + ",filter=" + ObjectName.quote(filter.getKey())), new LatencyView(filter.getValue()));
+            }
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new IllegalStateException("Could not register the metrics of " + name, e);
+        }
+        return this;
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {
+                // Already unregistered by someone else.
+            }
+        }
+        registered.clear();
+    }
+
+    List<ObjectName> registeredMBeans() {
+        return Collections.unmodifiableList(new ArrayList<>(registered));
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    public interface ShelfMetricsMXBean {
+        long getCapacityReached();
+    }
+
+    private static class CapacityView implements ShelfMetricsMXBean {
+        private final LongAdder capacityReached;
+
+        CapacityView(LongAdder capacityReached) {
+            this.capacityReached = capacityReached;
+        }
+
+        @Override
+        public long getCapacityReached() {
+            return capacityReached.sum();
+        }
+    }
+
+    private static class LatencyView implements LatencyMXBean {
+        private final LatencyHistogram histogram;
+
+        LatencyView(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.snapshot().count();
+        }
+
+        @Override
+        public long getFailures() {
+            return histogram.snapshot().failures();
+        }
+
+        @Override
+        public double getThroughput() {
+            return histogram.snapshot().throughput();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return histogram.snapshot().meanNanos();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return histogram.snapshot().maxNanos();
+        }
+
+        @Override
+        public long get50thPercentileNanos() {
+            return histogram.snapshot().percentileNanos(50);
+        }
+
+        @Override
+        public long get90thPercentileNanos() {
+            return histogram.snapshot().percentileNanos(90);
+        }
+
+        @Override
+        public long get99thPercentileNanos() {
+            return histogram.snapshot().percentileNanos(99);
+        }
+
+        @Override
+        public long get999thPercentileNanos() {
+            return histogram.snapshot().percentileNanos(99.9);
+        }
+    }
+}
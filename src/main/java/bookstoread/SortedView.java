@@ -0,0 +1,111 @@
+package bookstoread;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The books of a shelf kept sorted by one comparator. Books are inserted after all books
+ * comparing equal to them, so the view matches a stable sort of the shelf. A snapshot
+ * shares the array until the next change copies it. Removed books are only marked and are
+ * dropped in one pass before the next snapshot.
+ */
+class SortedView {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Comparator<Book> comparator;
+    private Book[] books;
+    private int size;
+    private List<Book> snapshot;
+    private Set<Book> removed;
+
+    SortedView(Comparator<Book> comparator) {
+        this.comparator = comparator;
+    }
+
+    void add(Book book) {
+        if (books == null) {
+            return;
+        }
+        if (removed != null && removed.contains(book)) {
+            purge();
+        }
+        if (snapshot != null || size == books.length) {
+            books = Arrays.copyOf(books, size == books.length ? size * 2 : books.length);
+            snapshot = null;
+        }
+        int at = insertionPoint(book);
+        System.arraycopy(books, at, books, at + 1, size - at);
+        books[at] = book;
+        size++;
+    }
+
+    void remove(Book book) {
+        if (books == null) {
+            return;
+        }
+        if (removed == null) {
+            removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+        removed.add(book);
+    }
+
+    private void purge() {
+        if (snapshot != null) {
+            books = books.clone();
+            snapshot = null;
+        }
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!removed.contains(books[i])) {
+                books[kept++] = books[i];
+            }
+        }
+        Arrays.fill(books, kept, size, null);
+        size = kept;
+        removed = null;
+    }
+
+    /**
+     * Drops the sorted books after a change the comparator may depend on. The next
+     * snapshot sorts the shelf again.
+     */
+    void invalidate() {
+        books = null;
+        snapshot = null;
+        removed = null;
+    }
+
+    List<Book> snapshot(List<Book> shelf) {
+        if (books == null) {
+            size = shelf.size();
+            books = shelf.toArray(new Book[Math.max(INITIAL_CAPACITY, size)]);
+            Arrays.sort(books, 0, size, comparator);
+        }
+        if (removed != null) {
+            purge();
+        }
+        if (snapshot == null) {
+            snapshot = Collections.unmodifiableList(Arrays.asList(books).subList(0, size));
+        }
+        return snapshot;
+    }
+
+    private int insertionPoint(Book book) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(books[middle], book) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,39 @@
+package bookstoread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each distinct string a dense integer code, so repeated strings are stored once
+ * and columns can hold codes instead of references. {@code null} is encoded as {@code -1}.
+ */
+class StringDictionary {
+
+    static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    int encode(String s) {
+        if (s == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(s);
+        if (code == null) {
+            code = strings.size();
+            codes.put(s, code);
+            strings.add(s);
+        }
+        return code;
+    }
+
+    String decode(int code) {
+        return code == NULL_CODE ? null : strings.get(code);
+    }
+
+    int size() {
+        return strings.size();
+    }
+}
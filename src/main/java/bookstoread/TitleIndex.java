@@ -0,0 +1,81 @@
+package bookstoread;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index over lower-cased book titles. A title containing a query contains every
+ * trigram of that query, so the books posted under the rarest query trigram are a
+ * complete candidate set. Candidates still have to be checked against the query.
+ */
+class TitleIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<Long, BookList> postings = new HashMap<>();
+
+    void add(Book book) {
+        for (long gram : grams(book)) {
+            postings.computeIfAbsent(gram, key -> new BookList()).append(book);
+        }
+    }
+
+    void remove(Book book) {
+        for (long gram : grams(book)) {
+            BookList books = postings.get(gram);
+            if (books != null) {
+                books.removeInstances(book);
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of the lower-cased title of {@code book}.
+     */
+    private static long[] grams(Book book) {
+        String title = book.getTitle() == null ? "" : book.getTitle().toLowerCase();
+        if (title.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[title.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(title, i);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Returns the books that may contain {@code query} in shelf order, or {@code null} when
+     * the query is too short to be answered from the index.
+     */
+    List<Book> candidates(String query) {
+        if (query.length() < GRAM) {
+            return null;
+        }
+        BookList rarest = null;
+        for (int i = 0; i <= query.length() - GRAM; i++) {
+            BookList books = postings.get(gram(query, i));
+            if (books == null || books.isEmpty()) {
+                return Collections.emptyList();
+            }
+            if (rarest == null || books.size() < rarest.size()) {
+                rarest = books;
+            }
+        }
+        return rarest;
+    }
+
+    private static long gram(String s, int from) {
+        return ((long) s.charAt(from) << 32) | ((long) s.charAt(from + 1) << 16) | s.charAt(from + 2);
+    }
+}
@@ -0,0 +1,130 @@
+package bookstoread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Selects the first books of an arrangement with a bounded max-heap instead of a full sort.
+ * Books that compare equal keep their shelf order, exactly as in a stable sort, and a page
+ * can start after any previously returned book, which is what makes paging cheap.
+ */
+class TopBooks {
+
+    private final List<Book> books;
+    private final Comparator<Book> comparator;
+
+    TopBooks(List<Book> books, Comparator<Book> comparator) {
+        this.books = books;
+        this.comparator = comparator;
+    }
+
+    List<Book> first(int limit) {
+        return select(limit, -1, null, new int[Math.min(limit, books.size())]);
+    }
+
+    Iterator<List<Book>> pages(int pageSize) {
+        return new Iterator<List<Book>>() {
+            private int lastPosition = -1;
+            private Book last;
+            private List<Book> next;
+            private int[] nextPositions;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    nextPositions = new int[Math.min(pageSize, books.size())];
+                    next = select(pageSize, lastPosition, last, nextPositions);
+                }
+                return !next.isEmpty();
+            }
+
+            @Override
+            public List<Book> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<Book> page = next;
+                last = page.get(page.size() - 1);
+                lastPosition = nextPositions[page.size() - 1];
+                next = null;
+                return page;
+            }
+        };
+    }
+
+    /**
+     * The heap never holds more books than the shelf, so {@code maxBooks} may exceed its
+     * size by any amount; {@code positions} needs room for the smaller of the two.
+     */
+    private List<Book> select(int maxBooks, int afterPosition, Book after, int[] positions) {
+        int limit = Math.min(maxBooks, books.size());
+        Book[] heap = new Book[limit];
+        int size = 0;
+        int position = 0;
+        for (Book book : books) {
+            if (afterPosition < 0 || compare(book, position, after, afterPosition) > 0) {
+                if (size < limit) {
+                    heap[size] = book;
+                    positions[size] = position;
+                    siftUp(heap, positions, size++);
+                } else if (limit > 0 && compare(book, position, heap[0], positions[0]) < 0) {
+                    heap[0] = book;
+                    positions[0] = position;
+                    siftDown(heap, positions, size);
+                }
+            }
+            position++;
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(heap, positions, 0, end);
+            siftDown(heap, positions, end);
+        }
+        return new ArrayList<>(Arrays.asList(heap).subList(0, size));
+    }
+
+    private int compare(Book book, int position, Book other, int otherPosition) {
+        int result = comparator.compare(book, other);
+        return result != 0 ? result : Integer.compare(position, otherPosition);
+    }
+
+    private void siftUp(Book[] heap, int[] positions, int child) {
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (compare(heap[child], positions[child], heap[parent], positions[parent]) <= 0) {
+                return;
+            }
+            swap(heap, positions, child, parent);
+            child = parent;
+        }
+    }
+
+    private void siftDown(Book[] heap, int[] positions, int size) {
+        int parent = 0;
+        while (true) {
+            int largest = parent;
+            for (int child = 2 * parent + 1; child <= 2 * parent + 2 && child < size; child++) {
+                if (compare(heap[child], positions[child], heap[largest], positions[largest]) > 0) {
+                    largest = child;
+                }
+            }
+            if (largest == parent) {
+                return;
+            }
+            swap(heap, positions, parent, largest);
+            parent = largest;
+        }
+    }
+
+    private static void swap(Book[] heap, int[] positions, int i, int j) {
+        Book book = heap[i];
+        heap[i] = heap[j];
+        heap[j] = book;
+        int position = positions[i];
+        positions[i] = positions[j];
+        positions[j] = position;
+    }
+}
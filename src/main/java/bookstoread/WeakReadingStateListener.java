@@ -0,0 +1,31 @@
+package bookstoread;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A listener that refers to its owner weakly, so books do not keep a shelf they were added
+ * to alive. Once the owner is collected the listener does nothing, and books drop it the
+ * next time a listener is added to them. Subclasses must not refer to the owner themselves.
+ */
+abstract class WeakReadingStateListener<T> implements ReadingStateListener {
+
+    private final WeakReference<T> owner;
+
+    WeakReadingStateListener(WeakReference<T> owner) {
+        this.owner = owner;
+    }
+
+    @Override
+    public final void readingStateChanged(Book book, ReadingState from, ReadingState to) {
+        T current = owner.get();
+        if (current != null) {
+            readingStateChanged(current, book, from, to);
+        }
+    }
+
+    abstract void readingStateChanged(T owner, Book book, ReadingState from, ReadingState to);
+
+    boolean released() {
+        return owner.get() == null;
+    }
+}
@@ -0,0 +1,436 @@
+package bookstoread;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the mutations of one shelf since a point where every book on it was
+ * numbered by its position. Books added later get the next numbers, and records refer to
+ * books by number.
+ * <pre>
+ * int magic, short version, int capacity
+ * per record: int length, int CRC32 of type and payload, byte type, payload
+ *   ADD      string title, string author, int publishedOn, int startedOn, int finishedOn,
+ *            and long publishedOn if the int one is FAR_DAY
+ *   ADD_SAME long book          (a book instance that is already on the shelf, again)
+ *   REMOVE   int count, long book per removed book
+ *   READING  long book, int startedOn, int finishedOn
+ * string: int length in UTF-8 bytes or -1 for null, then the bytes
+ * </pre>
+ * {@code FAR_DAY} stands for a date whose epoch day does not fit an int, as in
+ * {@link Book}.
+ * <p>
+ * Appending only copies the record into memory. A committer thread writes what has been
+ * appended and forces it to disk once per commit interval, or sooner when a lot is pending
+ * or someone waits in {@link #sync()}, so one fsync covers every record appended since the
+ * last one. Replay stops at the first record that is incomplete or fails its checksum,
+ * which is where a crash tore the log.
+ */
+class WriteAheadLog implements Closeable {
+
+    static final int MAGIC = 0x424B574C;
+    static final short VERSION = 1;
+
+    static final byte ADD = 1;
+    static final byte ADD_SAME = 2;
+    static final byte REMOVE = 3;
+    static final byte READING = 4;
+
+    private static final int HEADER = 10;
+    private static final int RECORD_HEADER = 8;
+    private static final int INITIAL_BUFFER = 64 * 1024;
+    private static final int COMMIT_BYTES = 1024 * 1024;
+    private static final int MAX_PENDING = 8 * 1024 * 1024;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long commitIntervalNanos;
+    private final CRC32 crc = new CRC32();
+    private final Thread committer;
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private int recordStart;
+    private long appended;
+    private long durable;
+    private boolean syncRequested;
+    private boolean closed;
+    private IOException failure;
+
+    private WriteAheadLog(FileChannel channel, long commitIntervalMillis, String name) {
+        this.channel = channel;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+        this.committer = new Thread(this::commitLoop, "bookshelf-log-committer " + name);
+        this.committer.setDaemon(true);
+    }
+
+    /**
+     * Creates a new, empty log at {@code file} for a shelf of {@code capacity}.
+     */
+    static WriteAheadLog create(Path file, int capacity, long commitIntervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        forceDirectory(file.toAbsolutePath().getParent());
+        WriteAheadLog log = new WriteAheadLog(channel, commitIntervalMillis, file.getFileName().toString());
+        log.pending.putInt(MAGIC).putShort(VERSION).putInt(capacity);
+        log.appended = HEADER;
+        log.committer.start();
+        return log;
+    }
+
+    synchronized void add(Book book) {
+        byte[] title = bytes(book.getTitle());
+        byte[] author = bytes(book.getAuthor());
+        boolean far = book.publishedDay() == Book.FAR_DAY;
+        ByteBuffer out = begin(ADD, 8 + length(title) + length(author) + 12 + (far ? 8 : 0));
+        putString(out, title);
+        putString(out, author);
+        long days = book.readingDays();
+        out.putInt(book.publishedDay()).putInt(Book.startedDay(days)).putInt(Book.finishedDay(days));
+        if (far) {
+            out.putLong(book.publishedEpochDay());
+        }
+        end();
+    }
+
+    synchronized void addSame(long book) {
+        begin(ADD_SAME, 8).putLong(book);
+        end();
+    }
+
+    synchronized void remove(long[] books) {
+        ByteBuffer out = begin(REMOVE, 4 + 8 * books.length).putInt(books.length);
+        for (long book : books) {
+            out.putLong(book);
+        }
+        end();
+    }
+
+    synchronized void reading(long book, int startedDay, int finishedDay) {
+        begin(READING, 16).putLong(book).putInt(startedDay).putInt(finishedDay);
+        end();
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     */
+    synchronized void sync() throws IOException {
+        long target = appended;
+        syncRequested = true;
+        notifyAll();
+        try {
+            while (durable < target && failure == null) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the log to be written");
+        }
+        if (failure != null) {
+            throw new IOException("Writing the log failed", failure);
+        }
+    }
+
+    /**
+     * Syncs the log, stops the committer and closes the file. Appending afterwards fails.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+        }
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private ByteBuffer begin(byte type, int payload) {
+        if (closed) {
+            throw new IllegalStateException("The log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Writing the log failed", failure);
+        }
+        ensure(RECORD_HEADER + 1 + payload);
+        recordStart = pending.position();
+        pending.position(recordStart + RECORD_HEADER);
+        return pending.put(type);
+    }
+
+    private void end() {
+        int end = pending.position();
+        int length = end - recordStart - RECORD_HEADER;
+        crc.reset();
+        crc.update(pending.array(), recordStart + RECORD_HEADER, length);
+        pending.putInt(recordStart, length).putInt(recordStart + 4, (int) crc.getValue());
+        appended += end - recordStart;
+        if (end >= COMMIT_BYTES && recordStart < COMMIT_BYTES) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Makes room for {@code bytes} more, waiting for the committer while too much is pending.
+     */
+    private void ensure(int bytes) {
+        try {
+            while (pending.position() >= MAX_PENDING && failure == null) {
+                syncRequested = true;
+                notifyAll();
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the log to be written"));
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Writing the log failed", failure);
+        }
+        if (pending.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + bytes));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long upTo;
+            synchronized (this) {
+                try {
+                    while (pending.position() == 0 && !closed) {
+                        wait();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    long deadline = System.nanoTime() + commitIntervalNanos;
+                    long remaining;
+                    while (!syncRequested && !closed && pending.position() < COMMIT_BYTES
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    failure = new InterruptedIOException("The log committer was interrupted");
+                    notifyAll();
+                    return;
+                }
+                batch = pending;
+                pending = spare;
+                spare = null;
+                upTo = appended;
+                syncRequested = false;
+                notifyAll();
+            }
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                batch.clear();
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = upTo;
+                }
+                notifyAll();
+                if (error != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the capacity recorded in the header of the log at {@code file}.
+     */
+    static int capacity(Path file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            return in.readInt();
+        }
+    }
+
+    /**
+     * Applies the records of the log at {@code file} to {@code shelf}, which must hold the
+     * books the log was started on, and returns the number of records applied.
+     */
+    static long replay(Path file, BookShelf shelf) throws IOException {
+        List<Book> numbered = new ArrayList<>(shelf.books());
+        List<Book> adding = new ArrayList<>();
+        long records = 0;
+        try (DataInputStream in = open(file)) {
+            in.readInt();
+            byte[] record = new byte[256];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 1 || length > MAX_RECORD) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, 2 * record.length)];
+                    }
+                    in.readFully(record, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(record, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.wrap(record, 1, length - 1);
+                switch (record[0]) {
+                    case ADD:
+                        String title = getString(payload);
+                        String author = getString(payload);
+                        int publishedOn = payload.getInt();
+                        int startedOn = payload.getInt();
+                        int finishedOn = payload.getInt();
+                        LocalDate published = publishedOn == Book.FAR_DAY && payload.remaining() >= 8 ? LocalDate.ofEpochDay(payload.getLong()) : Book.toDate(publishedOn);
+                        Book book = new Book(title, author, published);
+                        book.restoreReadingDays(startedOn, finishedOn);
+                        numbered.add(book);
+                        adding.add(book);
+                        break;
+                    case ADD_SAME:
+                        adding.add(book(numbered, payload.getLong()));
+                        break;
+                    case REMOVE:
+                        flush(shelf, adding);
+                        Set<Book> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+                        for (int i = payload.getInt(); i > 0; i--) {
+                            removed.add(book(numbered, payload.getLong()));
+                        }
+                        shelf.removeIf(removed::contains);
+                        break;
+                    case READING:
+                        flush(shelf, adding);
+                        Book reading = book(numbered, payload.getLong());
+                        reading.startedReadingOn(Book.toDate(payload.getInt()));
+                        reading.finishedReadingOn(Book.toDate(payload.getInt()));
+                        break;
+                    default:
+                        throw new IOException("Unknown record type " + record[0] + " in " + file);
+                }
+                records++;
+            }
+        }
+        flush(shelf, adding);
+        return records;
+    }
+
+    private static void flush(BookShelf shelf, List<Book> adding) {
+        if (!adding.isEmpty()) {
+            shelf.add(adding.toArray(new Book[0]));
+            adding.clear();
+        }
+    }
+
+    private static Book book(List<Book> numbered, long number) throws IOException {
+        if (number < 0 || number >= numbered.size()) {
+            throw new IOException("Log refers to unknown book " + number);
+        }
+        return numbered.get((int) number);
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        InputStream stream = Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, INITIAL_BUFFER));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a bookshelf log");
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported bookshelf log version " + version + " in " + file);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    /**
+     * Syncs the entries of {@code directory}, so files created or renamed in it survive a
+     * crash. Not every platform can open a directory; there the rename is left to the OS.
+     */
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be synced on this platform.
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+        } else {
+            out.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+}
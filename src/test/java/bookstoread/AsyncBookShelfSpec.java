@@ -0,0 +1,167 @@
+package bookstoread;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("An async bookshelf")
+class AsyncBookShelfSpec {
+
+    private final Book effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+    private final Book codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+    private final Book cleanCode = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+
+    private final Queue<Runnable> executed = new ArrayDeque<>();
+    private AsyncBookShelf shelf;
+
+    @BeforeEach
+    void init() {
+        shelf = new AsyncBookShelf(new BookShelf(), executed::add);
+    }
+
+    private void runAll() {
+        while (!executed.isEmpty()) {
+            executed.poll().run();
+        }
+    }
+
+    @Test
+    @DisplayName("answers queries like the shelf it wraps")
+    void answersQueries() throws Exception {
+        AsyncBookShelf shelf = new AsyncBookShelf(new BookShelf());
+        shelf.add(effectiveJava, codeComplete, cleanCode);
+
+        assertEquals(asList(cleanCode, codeComplete, effectiveJava), shelf.arrange().get(1, TimeUnit.SECONDS));
+        assertThat(shelf.groupBy(Book::getAuthor).get(1, TimeUnit.SECONDS)).containsOnlyKeys("Joshua Bloch", "Steve McConnel", "Robert C. Martin");
+        assertEquals(asList(codeComplete, cleanCode), shelf.findBooksByTitle("code").get(1, TimeUnit.SECONDS));
+        assertEquals(100, shelf.progress().get(1, TimeUnit.SECONDS).toRead());
+    }
+
+    @Test
+    @DisplayName("runs calls in the order they were made without an executor thread each")
+    void runsCallsInOrder() {
+        shelf.add(effectiveJava);
+        CompletableFuture<List<Book>> before = shelf.arrange();
+        shelf.add(codeComplete);
+        CompletableFuture<List<Book>> after = shelf.arrange();
+
+        assertEquals(1, executed.size());
+        runAll();
+
+        assertEquals(asList(effectiveJava), before.join());
+        assertEquals(asList(codeComplete, effectiveJava), after.join());
+    }
+
+    @Test
+    @DisplayName("shares the result of identical pending queries")
+    void coalescesQueries() {
+        shelf.add(effectiveJava, cleanCode);
+        Comparator<Book> byTitle = Comparator.comparing(Book::getTitle);
+
+        CompletableFuture<List<Book>> first = shelf.arrange(byTitle);
+        CompletableFuture<List<Book>> second = shelf.arrange(byTitle);
+        CompletableFuture<List<Book>> other = shelf.findBooksByTitle("java");
+
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(2, shelf.pendingQueries());
+        runAll();
+        assertEquals(0, shelf.pendingQueries());
+        assertEquals(asList(cleanCode, effectiveJava), second.join());
+        assertThrows(UnsupportedOperationException.class, () -> second.join().clear());
+    }
+
+    @Test
+    @DisplayName("does not share a query across a write")
+    void doesNotCoalesceAcrossWrites() {
+        CompletableFuture<List<Book>> before = shelf.arrange();
+        shelf.add(cleanCode);
+        CompletableFuture<List<Book>> after = shelf.arrange();
+
+        assertNotSame(before, after);
+        runAll();
+        assertThat(before.join()).isEmpty();
+        assertEquals(asList(cleanCode), after.join());
+    }
+
+    @Test
+    @DisplayName("shares queries again after a write")
+    void coalescesAfterWrites() {
+        CompletableFuture<List<Book>> before = shelf.arrange();
+        shelf.add(cleanCode);
+        CompletableFuture<List<Book>> after = shelf.arrange();
+        CompletableFuture<List<Book>> again = shelf.arrange();
+
+        assertNotSame(before, after);
+        assertSame(after, again);
+        runAll();
+        assertEquals(0, shelf.pendingQueries());
+        assertEquals(asList(cleanCode), again.join());
+    }
+
+    @Test
+    @DisplayName("sees every write made before a query while other threads share queries")
+    void seesWritesAcrossThreads() throws Exception {
+        AsyncBookShelf shelf = new AsyncBookShelf(new BookShelf());
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                shelf.findBooksByTitle("book").join();
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 2_000; i++) {
+                shelf.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+                assertEquals(i + 1, shelf.findBooksByTitle("book").get(1, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            writing.set(false);
+            reader.join();
+        }
+    }
+
+    @Test
+    @DisplayName("fails the future of a call that throws and goes on with the next")
+    void failsFutures() {
+        AsyncBookShelf full = new AsyncBookShelf(new BookShelf(1), executed::add);
+        full.add(effectiveJava);
+        CompletableFuture<Void> refused = full.add(cleanCode);
+        CompletableFuture<List<Book>> books = full.arrange();
+        runAll();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, refused::get);
+        assertThat(exception.getCause()).isInstanceOf(BookShelfCapacityReached.class);
+        assertEquals(asList(effectiveJava), books.join());
+    }
+
+    @Test
+    @DisplayName("fails the future when the executor rejects the call")
+    void failsRejectedCalls() {
+        AsyncBookShelf rejecting = new AsyncBookShelf(new BookShelf(), task -> {
+            throw new RejectedExecutionException("shut down");
+        });
+
+        CompletableFuture<Progress> progress = rejecting.progress();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, progress::get);
+        assertThat(exception.getCause()).isInstanceOf(RejectedExecutionException.class);
+        assertEquals(0, rejecting.pendingQueries());
+    }
+}
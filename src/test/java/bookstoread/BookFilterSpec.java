@@ -90,6 +90,58 @@ class BookFilterSpec {
         }
     }
 
+    @Nested
+    @DisplayName("book published date between specified years")
+    class BookPublishedBetweenFilterSpec implements FilterBoundaryTests {
+
+        BookFilter filter;
+
+        @BeforeEach
+        void init() {
+            filter = BookPublishedYearFilter.Between(2005, 2008);
+        }
+
+        @Override
+        public BookFilter get() {
+            return filter;
+        }
+
+        @Test
+        @DisplayName("should give matching book")
+        void validateBookPublishedBetweenAskedYears() {
+            assertTrue(filter.apply(cleanCode));
+            assertFalse(filter.apply(codeComplete));
+            assertFalse(filter.apply(new Book("Untitled", "Unknown", null)));
+        }
+    }
+
+    @Nested
+    @DisplayName("book published date between specified days")
+    class BookPublishedBetweenDatesFilterSpec implements FilterBoundaryTests {
+
+        BookFilter filter;
+
+        @BeforeEach
+        void init() {
+            filter = BookPublishedDateFilter.Between(LocalDate.of(2004, Month.JUNE, 9), LocalDate.of(2008, Month.JULY, 31));
+        }
+
+        @Override
+        public BookFilter get() {
+            return filter;
+        }
+
+        @Test
+        @DisplayName("should include both days and nothing outside them")
+        void validateBookPublishedBetweenAskedDays() {
+            assertFalse(filter.apply(cleanCode));
+            assertTrue(filter.apply(codeComplete));
+            assertTrue(BookPublishedDateFilter.After(LocalDate.of(2008, Month.JULY, 31)).apply(cleanCode));
+            assertFalse(BookPublishedDateFilter.Before(LocalDate.of(2004, Month.JUNE, 9)).apply(codeComplete));
+            assertFalse(BookPublishedDateFilter.Before(LocalDate.of(2004, Month.JUNE, 9)).apply(new Book("Untitled", "Unknown", null)));
+        }
+    }
+
     /**
      * can we really say that we have called all the filters here ?
      * Enters Mocking now !
@@ -106,8 +158,8 @@ class BookFilterSpec {
     }
 
     @Test
-    @DisplayName("Composite criteria  invokes all incase of failure")
-    void shouldInvokeAllInFailure() {
+    @DisplayName("Composite criteria stops at the first failure")
+    void shouldStopAtFirstFailure() {
         CompositeFilter compositeFilter = new CompositeFilter();
 
         BookFilter invokedMockedFilter = Mockito.mock(BookFilter.class);
@@ -120,7 +172,7 @@ class BookFilterSpec {
 
         assertFalse(compositeFilter.apply(cleanCode));
         Mockito.verify(invokedMockedFilter).apply(cleanCode);
-        Mockito.verify(secondInvokedMockedFilter).apply(cleanCode);
+        Mockito.verify(secondInvokedMockedFilter, Mockito.never()).apply(cleanCode);
     }
 
     @Test
@@ -154,6 +206,41 @@ class BookFilterSpec {
         }
     }
 
+    @Test
+    @DisplayName("Any-of criteria stops at the first match")
+    void shouldStopAtFirstMatch() {
+        MockedFilter matching = new MockedFilter(true);
+        MockedFilter skipped = new MockedFilter(false);
+        assertTrue(CompositeFilter.anyOf(matching, skipped).apply(cleanCode));
+        assertTrue(matching.invoked);
+        assertFalse(skipped.invoked);
+        assertFalse(CompositeFilter.anyOf(new MockedFilter(false), new MockedFilter(false)).apply(cleanCode));
+    }
+
+    @Test
+    @DisplayName("Negated criteria inverts the filter but not for null book")
+    void shouldNegateFilter() {
+        BookFilter filter = CompositeFilter.not(BookPublishedYearFilter.After(2007));
+        assertFalse(filter.apply(cleanCode));
+        assertTrue(filter.apply(codeComplete));
+        assertFalse(filter.apply(null));
+    }
+
+    @Test
+    @DisplayName("Composite criteria moves the filter that rejects books to the front")
+    void shouldRunSelectiveFilterFirst() {
+        MockedFilter passing = new MockedFilter(true);
+        CompositeFilter compositeFilter = CompositeFilter.allOf(passing, new MockedFilter(false));
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(compositeFilter.apply(cleanCode));
+        }
+        passing.invoked = false;
+        for (int i = 0; i < 10; i++) {
+            assertFalse(compositeFilter.apply(cleanCode));
+        }
+        assertFalse(passing.invoked);
+    }
+
     @TestFactory
     Collection<DynamicTest> dynamicTestsFromCollection() {
         BookFilter filter= null;
@@ -5,8 +5,14 @@ import org.junit.jupiter.api.extension.*;
 
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
@@ -95,6 +101,77 @@ class BookShelfProgressSpec {
         assertThat(progress.toRead()).isEqualTo(40);
     }
 
+    @Test
+    @DisplayName("counts books that were already read when they were added")
+    void progressCountsBooksReadBeforeAdding() {
+        Book refactoringToPatterns = new Book("Refactoring to Patterns", "Joshua Kerievsky", LocalDate.of(2004, Month.AUGUST, 5));
+        refactoringToPatterns.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        refactoringToPatterns.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+        shelf.add(refactoringToPatterns);
+
+        Progress progress = shelf.progress();
+        assertThat(progress.completed()).isEqualTo(16);
+        assertThat(progress.toRead()).isEqualTo(83);
+    }
+
+    @Test
+    @DisplayName("follows books moving back and forth between reading states")
+    void progressFollowsReadingStateChanges(Book[] books) {
+        books[0].startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        assertThat(shelf.progress().inProgress()).isEqualTo(20);
+
+        books[0].finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+        assertThat(shelf.progress().inProgress()).isEqualTo(0);
+        assertThat(shelf.progress().completed()).isEqualTo(20);
+
+        books[0].finishedReadingOn(null);
+        assertThat(shelf.progress().inProgress()).isEqualTo(20);
+        assertThat(shelf.progress().completed()).isEqualTo(0);
+
+        books[0].startedReadingOn(null);
+        assertThat(shelf.progress().toRead()).isEqualTo(100);
+    }
+
+    @Test
+    @DisplayName("counts a book added twice as two books")
+    void progressCountsDuplicatesSeparately(Book[] books) {
+        shelf.add(books[0]);
+        books[0].startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        books[0].finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+        assertThat(shelf.progress().completed()).isEqualTo(33);
+    }
+
+    @Test
+    @DisplayName("counts each book once when many threads start and finish it")
+    void progressCountsConcurrentReadingStateChanges(Book[] books) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 8; reader++) {
+                int day = reader + 1;
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        for (Book book : books) {
+                            book.startedReadingOn(LocalDate.of(2016, Month.JULY, day));
+                            book.finishedReadingOn(LocalDate.of(2016, Month.AUGUST, day));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(Arrays.stream(books).allMatch(Book::isRead));
+        assertThat(shelf.progress().completed()).isEqualTo(100);
+        assertThat(shelf.progress().inProgress()).isEqualTo(0);
+    }
+
 }
 
 class BooksProvider implements ParameterResolver {
@@ -0,0 +1,127 @@
+package bookstoread;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A bookshelf snapshot")
+class BookShelfSnapshotSpec {
+
+    private Path file;
+    private Book effectiveJava;
+    private Book codeComplete;
+    private Book mythicalManMonth;
+    private Book untitled;
+
+    @BeforeEach
+    void init() throws IOException {
+        file = Files.createTempFile("bookshelf", ".snapshot");
+        effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+        codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+        mythicalManMonth = new Book("The Mythical Man-Month", "Frederick Phillips Brooks", LocalDate.of(1975, Month.JANUARY, 1));
+        untitled = new Book(null, "Joshua Bloch", null);
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    @DisplayName("restores books, reading progress and capacity")
+    void restoresShelf() throws IOException {
+        BookShelf shelf = new BookShelf(5);
+        shelf.add(effectiveJava, codeComplete, mythicalManMonth, untitled);
+        codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+        effectiveJava.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+
+        BookShelfSnapshot.write(shelf, file);
+        BookShelf restored = BookShelfSnapshot.read(file);
+
+        assertEquals(shelf.books(), restored.books());
+        assertThat(restored.progress().completed()).isEqualTo(25);
+        assertThat(restored.progress().inProgress()).isEqualTo(25);
+        assertSame(restored.books().get(0).getAuthor(), restored.books().get(3).getAuthor());
+        restored.add(new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1)));
+        assertThrows(BookShelfCapacityReached.class, () -> restored.add(effectiveJava));
+    }
+
+    @Test
+    @DisplayName("restores books dated at the ends of the date range")
+    void restoresFarDates() throws IOException {
+        Book first = new Book("First", "Anonymous", LocalDate.MIN);
+        Book last = new Book("Last", "Anonymous", LocalDate.MAX);
+        first.startedReadingOn(LocalDate.MIN);
+        BookShelf shelf = new BookShelf();
+        shelf.add(first, effectiveJava, last, last);
+
+        BookShelfSnapshot.write(shelf, file);
+        BookShelf restored = BookShelfSnapshot.read(file);
+
+        assertEquals(shelf.books(), restored.books());
+        assertEquals(LocalDate.MIN, restored.books().get(0).getPublishedOn());
+        assertEquals(LocalDate.MAX, restored.books().get(2).getPublishedOn());
+        assertSame(restored.books().get(2), restored.books().get(3));
+        assertTrue(restored.books().get(0).isProgress());
+    }
+
+    @Test
+    @DisplayName("restores a large shelf")
+    void restoresLargeShelf() throws IOException {
+        BookShelf shelf = new BookShelf();
+        for (int i = 0; i < 20_000; i++) {
+            shelf.add(new Book("Book " + i, "Author " + (i % 100), LocalDate.of(1900 + i % 100, Month.JANUARY, 1)));
+        }
+        BookShelfSnapshot.write(shelf, file);
+
+        assertEquals(shelf.books(), BookShelfSnapshot.read(file).books());
+    }
+
+    @Test
+    @DisplayName("replaces an earlier snapshot without leaving a temporary file behind")
+    void replacesSnapshot() throws IOException {
+        BookShelf shelf = new BookShelf();
+        shelf.add(effectiveJava);
+        BookShelfSnapshot.write(shelf, file);
+        shelf.add(codeComplete);
+
+        BookShelfSnapshot.write(shelf, file);
+
+        assertEquals(shelf.books(), BookShelfSnapshot.read(file).books());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    @DisplayName("rejects a corrupt snapshot")
+    void rejectsCorruptSnapshot() throws IOException {
+        BookShelf shelf = new BookShelf();
+        shelf.add(effectiveJava, codeComplete);
+        BookShelfSnapshot.write(shelf, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        IOException exception = assertThrows(IOException.class, () -> BookShelfSnapshot.read(file));
+        assertThat(exception.getMessage()).contains("checksum");
+    }
+
+    @Test
+    @DisplayName("rejects a file that is not a snapshot")
+    void rejectsOtherFiles() throws IOException {
+        Files.write(file, "title,author,publishedOn".getBytes());
+
+        IOException exception = assertThrows(IOException.class, () -> BookShelfSnapshot.read(file));
+        assertThat(exception.getMessage()).contains("checksum");
+    }
+}
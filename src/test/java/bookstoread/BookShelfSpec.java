@@ -4,15 +4,24 @@ import org.junit.jupiter.api.*;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
+import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.Year;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
@@ -99,6 +108,73 @@ public class BookShelfSpec {
 
     }
 
+    @Nested
+    @DisplayName("hands out snapshots")
+    class Snapshots {
+
+        @Test
+        @DisplayName("that later adds and removals do not change")
+        void snapshotIsStable() {
+            shelf.add(effectiveJava, codeComplete);
+            List<Book> books = shelf.books();
+
+            shelf.add(mythicalManMonth);
+            shelf.remove(effectiveJava);
+
+            assertEquals(asList(effectiveJava, codeComplete), books);
+            assertEquals(asList(codeComplete, mythicalManMonth), shelf.books());
+        }
+
+        @Test
+        @DisplayName("that readers can iterate while books are added")
+        void readersIterateWhileWriting() throws Exception {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Integer> reader = executor.submit(() -> {
+                    int largest = 0;
+                    while (largest < 100_000) {
+                        List<Book> books = shelf.books();
+                        int seen = 0;
+                        for (Book book : books) {
+                            assertNotNull(book);
+                            seen++;
+                        }
+                        assertEquals(books.size(), seen);
+                        assertTrue(seen >= largest);
+                        largest = seen;
+                    }
+                    return largest;
+                });
+                for (int i = 0; i < 100_000; i++) {
+                    shelf.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+                }
+                assertEquals(100_000, reader.get(10, TimeUnit.SECONDS).intValue());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("that count books whose reading state changes while they are added")
+        void countsBooksChangedWhileAdded() throws Exception {
+            for (BookShelf shelf : asList(new BookShelf(), new ColumnarBookShelf())) {
+                shelf.registerGrouping("in progress", Book::isProgress);
+                List<Book> books = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    books.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+                }
+                Thread reader = new Thread(() -> books.forEach(book -> book.startedReadingOn(LocalDate.of(2016, Month.JULY, 1))));
+                reader.start();
+                books.forEach(shelf::add);
+                reader.join();
+
+                assertEquals(20_000, shelf.readingStateCounts()[ReadingState.IN_PROGRESS.ordinal()]);
+                assertThat(shelf.grouping("in progress")).containsOnlyKeys(true);
+                assertTrue(shelf.books().get(19_999).isProgress());
+            }
+        }
+    }
+
     @Test
     void throwsExceptionWhenBooksAreAddedAfterCapacityIsReached() {
         BookShelf bookShelf = new BookShelf(2);
@@ -136,6 +212,20 @@ public class BookShelfSpec {
             assertEquals(asList(codeComplete, effectiveJava, mythicalManMonth), books, () -> "Books in a bookshelf should be arranged lexicographically by book title");
         }
 
+        @Test
+        @DisplayName("lexicographically by book title when titles share a prefix")
+        void bookshelfArrangedByBookTitleWithCommonPrefix() {
+            List<Book> titles = new ArrayList<>();
+            for (String title : asList("Java", "Jav", "Java 8 in Action", "Java Concurrency in Practice", "java", "Jav\u00e4", "", "J\uffff")) {
+                titles.add(new Book(title, "Author", LocalDate.of(2010, Month.JANUARY, 1)));
+            }
+            shelf.add(titles.toArray(new Book[0]));
+
+            List<Book> expected = new ArrayList<>(titles);
+            expected.sort(Comparator.comparing(Book::getTitle));
+            assertEquals(expected, shelf.arrange());
+        }
+
 
         /*
         Book note:
@@ -182,6 +272,146 @@ public class BookShelfSpec {
     }
 
 
+    @Nested
+    @DisplayName("keeps arrangements")
+    class KeptArrangements {
+
+        private final Comparator<Book> byPublication = Comparator.comparing(Book::getPublishedOn);
+
+        @Test
+        @DisplayName("that match a full arrangement as books are added")
+        void keptArrangementMatchesSort() {
+            BookShelf keptShelf = new BookShelf().keepArranged(Comparator.naturalOrder()).keepArranged(byPublication);
+            Book cleanCodeAgain = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+            for (Book book : asList(effectiveJava, codeComplete, cleanCode, mythicalManMonth, cleanCodeAgain)) {
+                shelf.add(book);
+                keptShelf.add(book);
+                assertEquals(shelf.arrange(), keptShelf.arrange());
+                assertEquals(shelf.arrange(byPublication), keptShelf.arrange(byPublication));
+            }
+            assertSame(cleanCodeAgain, keptShelf.arrange(byPublication).get(4));
+            assertEquals(shelf.arrange(byPublication, 2), keptShelf.arrange(byPublication, 2));
+        }
+
+        @Test
+        @DisplayName("as snapshots that later adds do not change")
+        void snapshotsAreStable() {
+            shelf.keepArranged(Comparator.naturalOrder());
+            shelf.add(effectiveJava, mythicalManMonth);
+            List<Book> books = shelf.arrange();
+            assertSame(books, shelf.arrange());
+
+            shelf.add(codeComplete);
+
+            assertEquals(asList(effectiveJava, mythicalManMonth), books);
+            assertEquals(asList(codeComplete, effectiveJava, mythicalManMonth), shelf.arrange());
+            assertThrows(UnsupportedOperationException.class, () -> books.add(cleanCode));
+        }
+
+        @Test
+        @DisplayName("that hold a book added while they were being built")
+        void buildsFromPublishedBooks() {
+            Comparator<Book> unbuilt = new OrderedComparator(1, Comparator.naturalOrder());
+            Comparator<Book> arrangingWhileAdding = new OrderedComparator(2, (book, other) -> {
+                shelf.arrange(unbuilt);
+                return book.compareTo(other);
+            });
+            shelf.keepArranged(unbuilt).keepArranged(arrangingWhileAdding);
+            shelf.add(effectiveJava);
+            shelf.arrange(arrangingWhileAdding);
+
+            shelf.add(cleanCode);
+
+            assertEquals(asList(cleanCode, effectiveJava), shelf.arrange(unbuilt));
+        }
+
+        @Test
+        @DisplayName("that follow reading state changes")
+        void followsReadingStateChanges() {
+            Comparator<Book> readFirst = Comparator.comparing(book -> !book.isRead());
+            shelf.keepArranged(readFirst);
+            shelf.add(effectiveJava, codeComplete);
+            assertEquals(asList(effectiveJava, codeComplete), shelf.arrange(readFirst));
+
+            codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+            codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+            assertEquals(asList(codeComplete, effectiveJava), shelf.arrange(readFirst));
+        }
+    }
+
+    /**
+     * A comparator with a fixed hash code, so kept views are visited in a known order: the
+     * unbuilt one first, then the one whose comparator builds it.
+     */
+    private static class OrderedComparator implements Comparator<Book> {
+        private final int hash;
+        private final Comparator<Book> comparator;
+
+        OrderedComparator(int hash, Comparator<Book> comparator) {
+            this.hash = hash;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(Book book, Book other) {
+            return comparator.compare(book, other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    @Nested
+    @DisplayName("is arranged partially")
+    class WhenArrangedPartially {
+
+        @BeforeEach
+        void init() {
+            for (int i = 0; i < 500; i++) {
+                shelf.add(new Book("Book " + (i * 7919 % 97), "Author " + i, LocalDate.of(1900 + i % 50, Month.JANUARY, 1)));
+            }
+        }
+
+        @Test
+        @DisplayName("returning the first books of the full arrangement")
+        void firstBooksOfArrangement() {
+            Comparator<Book> byPublication = Comparator.comparing(Book::getPublishedOn);
+            assertEquals(shelf.arrange().subList(0, 20), shelf.arrange(Comparator.naturalOrder(), 20));
+            assertEquals(shelf.arrange(byPublication).subList(0, 20), shelf.arrange(byPublication, 20));
+            assertEquals(shelf.arrange(), shelf.arrange(Comparator.naturalOrder(), 1_000));
+            assertTrue(shelf.arrange(Comparator.naturalOrder(), 0).isEmpty());
+        }
+
+        @Test
+        @DisplayName("page by page")
+        void pageByPage() {
+            Comparator<Book> byPublication = Comparator.comparing(Book::getPublishedOn);
+            List<Book> pagedBooks = new ArrayList<>();
+            Iterator<List<Book>> pages = shelf.pages(byPublication, 30);
+            while (pages.hasNext()) {
+                List<Book> page = pages.next();
+                assertThat(page.size()).isBetween(1, 30);
+                pagedBooks.addAll(page);
+            }
+            assertEquals(shelf.arrange(byPublication), pagedBooks);
+        }
+
+        @Test
+        @DisplayName("with a limit far larger than the shelf")
+        void limitLargerThanShelf() {
+            BookShelf smallShelf = new BookShelf();
+            smallShelf.add(effectiveJava, codeComplete);
+
+            assertEquals(asList(codeComplete, effectiveJava), smallShelf.arrange(Comparator.naturalOrder(), Integer.MAX_VALUE));
+            Iterator<List<Book>> pages = smallShelf.pages(Comparator.naturalOrder(), Integer.MAX_VALUE);
+            assertEquals(asList(codeComplete, effectiveJava), pages.next());
+            assertFalse(pages.hasNext());
+        }
+    }
+
     @Nested
     @DisplayName("books are grouped by")
     class GroupBy {
@@ -245,4 +475,601 @@ public class BookShelfSpec {
         }
 
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("keeps groupings")
+    class KeptGroupings {
+
+        @Test
+        @DisplayName("reusing an ad-hoc grouping until a book is added")
+        void reusesGroupingUntilShelfChanges() {
+            shelf.add(effectiveJava, codeComplete);
+            Function<Book, String> byAuthor = Book::getAuthor;
+
+            Map<String, List<Book>> booksByAuthor = shelf.groupBy(byAuthor);
+            assertSame(booksByAuthor, shelf.groupBy(byAuthor));
+
+            shelf.add(cleanCode);
+            assertNotSame(booksByAuthor, shelf.groupBy(byAuthor));
+            assertThat(shelf.groupBy(byAuthor)).containsKey("Robert C. Martin");
+            assertThrows(UnsupportedOperationException.class, () -> shelf.groupBy(byAuthor).get("Robert C. Martin").add(effectiveJava));
+        }
+
+        @Test
+        @DisplayName("not reusing an ad-hoc grouping made while a book was being added")
+        void doesNotReuseGroupingOfOldSnapshot() {
+            Function<Book, String> byAuthor = Book::getAuthor;
+            Comparator<Book> groupingWhileAdding = (book, other) -> {
+                shelf.groupBy(byAuthor);
+                return book.compareTo(other);
+            };
+            shelf.keepArranged(groupingWhileAdding);
+            shelf.add(effectiveJava);
+            shelf.arrange(groupingWhileAdding);
+
+            shelf.add(cleanCode);
+
+            assertThat(shelf.groupBy(byAuthor)).containsOnlyKeys("Joshua Bloch", "Robert C. Martin");
+        }
+
+        @Test
+        @DisplayName("updating a registered grouping as books are added")
+        void updatesRegisteredGroupingOnAdd() {
+            shelf.add(effectiveJava);
+            shelf.registerGrouping("author", Book::getAuthor);
+            shelf.add(codeComplete, cleanCode);
+
+            Map<String, List<Book>> booksByAuthor = shelf.grouping("author");
+            assertEquals(shelf.groupBy(Book::getAuthor), booksByAuthor);
+        }
+
+        @Test
+        @DisplayName("moving books of a registered grouping when their reading state changes")
+        void updatesRegisteredGroupingOnReadingStateChange() {
+            shelf.add(effectiveJava, codeComplete, cleanCode);
+            shelf.registerGrouping("read", Book::isRead);
+
+            effectiveJava.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+            effectiveJava.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+            Map<Boolean, List<Book>> booksByRead = shelf.grouping("read");
+            assertEquals(singletonList(effectiveJava), booksByRead.get(true));
+            assertEquals(asList(codeComplete, cleanCode), booksByRead.get(false));
+        }
+
+        @Test
+        @DisplayName("while other threads change reading states")
+        void updatesGroupingsFromOtherThreads() throws Exception {
+            shelf.registerGrouping("read", Book::isRead);
+            shelf.keepArranged(Comparator.naturalOrder());
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                books.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+            }
+            shelf.add(books.toArray(new Book[0]));
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            int added = 0;
+            try {
+                List<Future<?>> readers = new ArrayList<>();
+                for (int reader = 0; reader < 4; reader++) {
+                    int first = reader;
+                    readers.add(executor.submit(() -> {
+                        for (int i = first; i < books.size(); i += 4) {
+                            books.get(i).startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+                            books.get(i).finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+                        }
+                    }));
+                }
+                while (readers.stream().anyMatch(reader -> !reader.isDone())) {
+                    shelf.add(new Book("Added " + added++, "Author", LocalDate.of(2001, Month.JANUARY, 1)));
+                    shelf.grouping("read");
+                    shelf.arrange();
+                }
+                for (Future<?> reader : readers) {
+                    reader.get(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            Map<Boolean, List<Book>> booksByRead = shelf.grouping("read");
+            assertEquals(2_000, booksByRead.get(true).size());
+            assertEquals(added, booksByRead.containsKey(false) ? booksByRead.get(false).size() : 0);
+            List<Book> sorted = new ArrayList<>(shelf.books());
+            sorted.sort(Comparator.naturalOrder());
+            assertEquals(sorted, shelf.arrange());
+        }
+
+        @Test
+        @DisplayName("only for groupings that were registered")
+        void rejectsUnknownGrouping() {
+            assertThrows(IllegalArgumentException.class, () -> shelf.grouping("publisher"));
+            assertThrows(IllegalArgumentException.class, () -> new ConcurrentBookShelf().grouping("publisher"));
+        }
+
+        @Test
+        @DisplayName("computed when read on shelves that store books themselves")
+        void groupsOnScannedShelves() {
+            for (BookShelf scannedShelf : asList(new ConcurrentBookShelf(), new ColumnarBookShelf())) {
+                scannedShelf.registerGrouping("read", Book::isRead);
+                scannedShelf.add(effectiveJava, codeComplete, cleanCode);
+
+                scannedShelf.books().get(1).startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+                scannedShelf.books().get(1).finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+                Map<Boolean, List<Book>> booksByRead = scannedShelf.grouping("read");
+                assertEquals(singletonList(codeComplete), booksByRead.get(true));
+                assertEquals(asList(effectiveJava, cleanCode), booksByRead.get(false));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("applies reading status batches")
+    class ReadingStatusBatches {
+
+        @Test
+        @DisplayName("to equal books and to books matching a filter, in the order given")
+        void appliesChangesByBookAndFilter() {
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+            ReadingStatusBatch batch = new ReadingStatusBatch()
+                    .startedReadingOn(new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8)), LocalDate.of(2016, Month.JULY, 1))
+                    .startedReadingOn(b -> b.getTitle().contains("Code"), LocalDate.of(2016, Month.AUGUST, 1))
+                    .finishedReadingOn(effectiveJava, LocalDate.of(2016, Month.JULY, 31))
+                    .finishedReadingOn(codeComplete, LocalDate.of(2016, Month.AUGUST, 31));
+
+            assertEquals(3, shelf.apply(batch));
+            assertTrue(effectiveJava.isRead());
+            assertTrue(codeComplete.isRead());
+            assertTrue(cleanCode.isProgress());
+            assertThat(shelf.progress().completed()).isEqualTo(50);
+            assertThat(shelf.progress().inProgress()).isEqualTo(25);
+            assertEquals(0, shelf.apply(batch));
+        }
+
+        @Test
+        @DisplayName("updating kept groupings and arrangements once")
+        void updatesGroupingsAndArrangements() {
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+            shelf.registerGrouping("read", Book::isRead);
+            Comparator<Book> readFirst = Comparator.comparing(Book::isRead).reversed();
+            shelf.keepArranged(readFirst);
+            shelf.arrange(readFirst);
+
+            shelf.apply(new ReadingStatusBatch()
+                    .startedReadingOn(b -> true, LocalDate.of(2016, Month.JULY, 1))
+                    .finishedReadingOn(cleanCode, LocalDate.of(2016, Month.JULY, 31)));
+
+            Map<Boolean, List<Book>> booksByRead = shelf.grouping("read");
+            assertEquals(singletonList(cleanCode), booksByRead.get(true));
+            assertEquals(asList(effectiveJava, codeComplete, mythicalManMonth), booksByRead.get(false));
+            assertEquals(asList(cleanCode, effectiveJava, codeComplete, mythicalManMonth), shelf.arrange(readFirst));
+        }
+
+        @Test
+        @DisplayName("on shelves that store books themselves")
+        void appliesToColumnarShelf() {
+            BookShelf columnar = new ColumnarBookShelf();
+            columnar.add(effectiveJava, codeComplete);
+
+            assertEquals(1, columnar.apply(new ReadingStatusBatch().startedReadingOn(codeComplete, LocalDate.of(2016, Month.JULY, 1))));
+            assertThat(columnar.progress().inProgress()).isEqualTo(50);
+        }
+    }
+
+    @Nested
+    @DisplayName("is searched by publication year")
+    class ByPublicationYear {
+
+        @BeforeEach
+        void init() {
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+        }
+
+        @Test
+        @DisplayName("for books published before a year")
+        void booksPublishedBeforeYear() {
+            assertEquals(asList(mythicalManMonth, codeComplete), shelf.booksPublishedBefore(2008));
+        }
+
+        @Test
+        @DisplayName("for books published after a year")
+        void booksPublishedAfterYear() {
+            assertEquals(asList(effectiveJava, cleanCode), shelf.booksPublishedAfter(2004));
+            assertTrue(shelf.booksPublishedAfter(2008).isEmpty());
+        }
+
+        @Test
+        @DisplayName("for books published between two years")
+        void booksPublishedBetweenYears() {
+            assertEquals(asList(mythicalManMonth, codeComplete), shelf.booksPublishedBetween(1975, 2004));
+            assertTrue(shelf.booksPublishedBetween(2008, 1975).isEmpty());
+        }
+
+        @Test
+        @DisplayName("and the grouping by year is a snapshot that books added later do not change")
+        void groupingIsSnapshot() {
+            Map<Year, List<Book>> booksByPublicationYear = shelf.groupByPublicationYear();
+            Book refactoring = new Book("Refactoring", "Martin Fowler", LocalDate.of(2004, Month.MARCH, 9));
+
+            for (List<Book> books : booksByPublicationYear.values()) {
+                shelf.add(refactoring);
+            }
+
+            assertThat(booksByPublicationYear.get(Year.of(2004))).containsExactly(codeComplete);
+            assertThat(shelf.groupByPublicationYear().get(Year.of(2004))).containsExactly(codeComplete, refactoring, refactoring, refactoring);
+            assertThrows(UnsupportedOperationException.class, () -> booksByPublicationYear.get(Year.of(2004)).add(cleanCode));
+        }
+
+        @Test
+        @DisplayName("the same way on every kind of shelf")
+        void groupsByYearOnEveryShelf() {
+            Book undated = new Book("Undated", "Anonymous", null);
+            shelf.add(undated);
+            for (BookShelf other : asList(new ConcurrentBookShelf(), new ColumnarBookShelf())) {
+                other.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode, undated);
+
+                Map<Year, List<Book>> booksByYear = other.groupByPublicationYear();
+
+                assertEquals(shelf.groupByPublicationYear(), booksByYear);
+                assertThat(booksByYear).isInstanceOf(SortedMap.class);
+                assertThat(booksByYear.keySet()).containsExactly(Year.of(1975), Year.of(2004), Year.of(2008));
+                assertThrows(UnsupportedOperationException.class, () -> booksByYear.remove(Year.of(1975)));
+                assertThrows(UnsupportedOperationException.class, () -> booksByYear.get(Year.of(2008)).clear());
+            }
+        }
+
+        @Test
+        @DisplayName("for years at the ends of the int range")
+        void booksPublishedAroundExtremeYears() {
+            assertTrue(shelf.booksPublishedAfter(Integer.MAX_VALUE).isEmpty());
+            assertTrue(shelf.booksPublishedBefore(Integer.MIN_VALUE).isEmpty());
+            assertEquals(asList(mythicalManMonth, codeComplete, effectiveJava, cleanCode), shelf.booksPublishedAfter(Integer.MIN_VALUE));
+        }
+
+        @Test
+        @DisplayName("for books dated at the ends of the date range on every kind of shelf")
+        void booksDatedAtEndsOfDateRange() {
+            for (BookShelf dated : asList(new BookShelf(), new ConcurrentBookShelf(), new ColumnarBookShelf())) {
+                Book first = new Book("First", "Anonymous", LocalDate.MIN);
+                Book last = new Book("Last", "Anonymous", LocalDate.MAX);
+                first.startedReadingOn(LocalDate.MIN);
+                first.finishedReadingOn(LocalDate.MAX);
+                dated.add(first, effectiveJava, last);
+                last.startedReadingOn(LocalDate.MAX);
+
+                assertEquals(LocalDate.MIN, dated.books().get(0).getPublishedOn());
+                assertEquals(LocalDate.MAX, dated.books().get(2).getPublishedOn());
+                assertEquals(new Book("Last", "Anonymous", LocalDate.MAX), dated.books().get(2));
+                assertNotEquals(new Book("Last", "Anonymous", LocalDate.MIN), dated.books().get(2));
+                assertTrue(dated.books().get(0).isRead());
+                assertTrue(dated.books().get(2).isProgress());
+                assertThat(dated.groupByPublicationYear().keySet()).containsExactly(Year.of(Year.MIN_VALUE), Year.of(2008), Year.of(Year.MAX_VALUE));
+                assertEquals(singletonList(last), dated.findBooksByTitle("last", BookPublishedDateFilter.After(LocalDate.of(2008, Month.MAY, 8))));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("in parallel mode")
+    class InParallelMode {
+
+        private Book[] books;
+
+        @BeforeEach
+        void init() {
+            books = new Book[20_000];
+            for (int i = 0; i < books.length; i++) {
+                books[i] = new Book("Book " + (i * 7919 % 1000), "Author " + (i % 13), LocalDate.of(1900 + i % 120, Month.JANUARY, 1));
+                if (i % 3 == 0) {
+                    books[i].startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+                }
+                if (i % 9 == 0) {
+                    books[i].finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("gives the same results in the same order as sequential queries")
+        void sameResultsAsSequential() {
+            shelf.add(books);
+            BookShelf parallelShelf = new BookShelf().withParallelism(1_000);
+            parallelShelf.add(books);
+
+            assertEquals(shelf.arrange(), parallelShelf.arrange());
+            assertEquals(shelf.arrange(Comparator.comparing(Book::getAuthor)), parallelShelf.arrange(Comparator.comparing(Book::getAuthor)));
+            assertEquals(shelf.groupBy(Book::getAuthor), parallelShelf.groupBy(Book::getAuthor));
+            assertEquals(shelf.findBooksByTitle("book 1", BookPublishedYearFilter.After(1950)), parallelShelf.findBooksByTitle("book 1", BookPublishedYearFilter.After(1950)));
+        }
+
+        @Test
+        @DisplayName("counts progress of scanned shelves in parallel")
+        void sameProgressAsSequential() {
+            shelf.add(books);
+            for (BookShelf scannedShelf : asList(new ConcurrentBookShelf().withParallelism(1_000), new ColumnarBookShelf().withParallelism(1_000))) {
+                scannedShelf.add(books);
+                Progress progress = scannedShelf.progress();
+                assertEquals(shelf.progress().completed(), progress.completed());
+                assertEquals(shelf.progress().inProgress(), progress.inProgress());
+                assertEquals(shelf.progress().toRead(), progress.toRead());
+            }
+        }
+
+        @Test
+        @DisplayName("needs a positive threshold")
+        void rejectsNonPositiveThreshold() {
+            assertThrows(IllegalArgumentException.class, () -> shelf.withParallelism(0));
+        }
+    }
+
+    @Nested
+    @DisplayName("with a duplicate policy")
+    class WithDuplicatePolicy {
+
+        private final Book effectiveJavaCopy = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+
+        @Test
+        @DisplayName("finds books equal to the given one")
+        void containsEqualBooks() {
+            shelf.add(effectiveJava, codeComplete);
+            assertTrue(shelf.contains(effectiveJavaCopy));
+            assertFalse(shelf.contains(cleanCode));
+
+            shelf.withDuplicatePolicy(DuplicatePolicy.ALLOW).add(cleanCode, effectiveJavaCopy);
+            assertTrue(shelf.contains(cleanCode));
+            assertEquals(4, shelf.books().size());
+        }
+
+        @Test
+        @DisplayName("skips books that are already on the shelf")
+        void skipsDuplicates() {
+            shelf.add(effectiveJava);
+            shelf.withDuplicatePolicy(DuplicatePolicy.SKIP);
+
+            shelf.add(effectiveJavaCopy, codeComplete, codeComplete);
+
+            assertEquals(asList(effectiveJava, codeComplete), shelf.books());
+            assertThat(shelf.progress().toRead()).isEqualTo(100);
+        }
+
+        @Test
+        @DisplayName("rejects books that are already on the shelf")
+        void rejectsDuplicates() {
+            shelf.withDuplicatePolicy(DuplicatePolicy.REJECT).add(effectiveJava);
+
+            BookAlreadyOnShelf exception = assertThrows(BookAlreadyOnShelf.class, () -> shelf.add(codeComplete, effectiveJavaCopy));
+            assertThat(exception.getMessage()).contains("Effective Java");
+            assertEquals(asList(effectiveJava, codeComplete), shelf.books());
+        }
+
+        @Test
+        @DisplayName("on shelves that store books themselves")
+        void appliesToScannedShelves() {
+            for (BookShelf scannedShelf : asList(new ConcurrentBookShelf(), new ColumnarBookShelf())) {
+                scannedShelf.add(effectiveJava);
+                scannedShelf.withDuplicatePolicy(DuplicatePolicy.SKIP).add(effectiveJavaCopy, codeComplete, codeComplete);
+
+                assertEquals(asList(effectiveJava, codeComplete), scannedShelf.books());
+                assertEquals(2, scannedShelf.duplicatesSkipped());
+                assertTrue(scannedShelf.contains(effectiveJavaCopy));
+
+                scannedShelf.withDuplicatePolicy(DuplicatePolicy.REJECT);
+                assertThrows(BookAlreadyOnShelf.class, () -> scannedShelf.add(cleanCode, effectiveJavaCopy));
+                assertEquals(asList(effectiveJava, codeComplete, cleanCode), scannedShelf.books());
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("removes books")
+    class RemovesBooks {
+
+        @Test
+        @DisplayName("equal to the given ones, keeping the order of the others")
+        void removesEqualBooks() {
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode, effectiveJava);
+            codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+
+            assertEquals(3, shelf.remove(new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8)), codeComplete));
+
+            assertEquals(asList(mythicalManMonth, cleanCode), shelf.books());
+            assertFalse(shelf.contains(effectiveJava));
+            assertThat(shelf.progress().toRead()).isEqualTo(100);
+            codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+            assertThat(shelf.progress().completed()).isEqualTo(0);
+            assertEquals(0, shelf.remove(codeComplete));
+        }
+
+        @Test
+        @DisplayName("matching a filter from every index, grouping and arrangement")
+        void removesMatchingBooksEverywhere() {
+            shelf.withTitleIndex().keepArranged(Comparator.naturalOrder());
+            shelf.registerGrouping("author", Book::getAuthor);
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+            shelf.arrange();
+
+            assertEquals(2, shelf.removeIf(BookPublishedYearFilter.After(2005)));
+
+            assertEquals(asList(codeComplete, mythicalManMonth), shelf.arrange());
+            assertEquals(singletonList(codeComplete), shelf.findBooksByTitle("code"));
+            assertThat(shelf.groupByPublicationYear()).containsOnlyKeys(Year.of(1975), Year.of(2004));
+            assertThat(shelf.grouping("author")).containsOnlyKeys("Steve McConnel", "Frederick Phillips Brooks");
+            assertEquals(shelf.groupBy(Book::getAuthor), shelf.grouping("author"));
+        }
+
+        @Test
+        @DisplayName("one at a time, keeping earlier snapshots and every index consistent")
+        void removesOneAtATime() {
+            shelf.withTitleIndex().withDuplicatePolicy(DuplicatePolicy.ALLOW).keepArranged(Comparator.naturalOrder());
+            shelf.registerGrouping("author", Book::getAuthor);
+            List<Book> books = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                books.add(new Book("Book " + i, "Author " + i % 10, LocalDate.of(1900 + i % 100, Month.JANUARY, 1)));
+            }
+            shelf.add(books.toArray(new Book[0]));
+            List<Book> before = shelf.books();
+            List<Book> kept = new ArrayList<>();
+
+            for (int i = 0; i < books.size(); i++) {
+                if (i % 4 == 0) {
+                    kept.add(books.get(i));
+                } else {
+                    assertEquals(1, shelf.remove(books.get(i)));
+                }
+                if (i % 100 == 99) {
+                    List<Book> expected = new ArrayList<>(kept);
+                    expected.addAll(books.subList(i + 1, books.size()));
+                    assertEquals(expected, shelf.books());
+                    assertEquals(expected, new ArrayList<>(shelf.books()));
+                }
+            }
+
+            assertEquals(books, before);
+            assertEquals(kept, shelf.books());
+            assertEquals(kept.get(kept.size() - 1), shelf.books().get(kept.size() - 1));
+            assertFalse(shelf.contains(books.get(1)));
+            assertTrue(shelf.contains(books.get(4)));
+            assertEquals(asList(books.get(0), books.get(100), books.get(200), books.get(300), books.get(400), books.get(500), books.get(600), books.get(700), books.get(800), books.get(900)),
+                    shelf.booksPublishedBetween(1900, 1900));
+            assertEquals(asList(books.get(12), books.get(120), books.get(124), books.get(128)), shelf.findBooksByTitle("book 12"));
+            assertEquals(shelf.groupBy(Book::getAuthor), shelf.grouping("author"));
+            assertThat(shelf.grouping("author")).containsOnlyKeys("Author 0", "Author 2", "Author 4", "Author 6", "Author 8");
+            List<Book> sorted = new ArrayList<>(kept);
+            sorted.sort(Comparator.naturalOrder());
+            assertEquals(sorted, shelf.arrange());
+            assertThat(shelf.progress().toRead()).isEqualTo(100);
+        }
+
+        @Test
+        @DisplayName("and adds them back")
+        void removesAndAddsBack() {
+            shelf.keepArranged(Comparator.naturalOrder());
+            shelf.registerGrouping("author", Book::getAuthor);
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth);
+
+            shelf.remove(codeComplete);
+            shelf.add(codeComplete);
+
+            assertEquals(asList(effectiveJava, mythicalManMonth, codeComplete), shelf.books());
+            assertEquals(asList(codeComplete, effectiveJava, mythicalManMonth), shelf.arrange());
+            assertEquals(singletonList(codeComplete), shelf.grouping("author").get("Steve McConnel"));
+            assertEquals(singletonList(codeComplete), shelf.booksPublishedBetween(2004, 2004));
+        }
+
+        @Test
+        @DisplayName("making room for new books")
+        void freesCapacity() {
+            BookShelf bookShelf = new BookShelf(2);
+            bookShelf.add(effectiveJava, codeComplete);
+            bookShelf.remove(effectiveJava);
+
+            bookShelf.add(effectiveJava);
+
+            assertEquals(asList(codeComplete, effectiveJava), bookShelf.books());
+            assertThrows(BookShelfCapacityReached.class, () -> bookShelf.add(cleanCode));
+        }
+
+        @Test
+        @DisplayName("from shelves that store books themselves")
+        void removesFromScannedShelves() {
+            for (BookShelf scannedShelf : asList(new ConcurrentBookShelf(2), new ColumnarBookShelf(2))) {
+                scannedShelf.withDuplicatePolicy(DuplicatePolicy.REJECT).add(effectiveJava, codeComplete);
+                List<Book> before = scannedShelf.books();
+
+                assertEquals(1, scannedShelf.remove(effectiveJava));
+                assertEquals(0, scannedShelf.removeIf(book -> book.getTitle().startsWith("Clean")));
+                scannedShelf.add(effectiveJava);
+
+                assertEquals(asList(effectiveJava, codeComplete), before);
+                assertEquals(asList(codeComplete, effectiveJava), scannedShelf.books());
+                assertThrows(BookShelfCapacityReached.class, () -> scannedShelf.add(cleanCode));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("with a title index")
+    class WithTitleIndex {
+
+        private BookShelf indexedShelf;
+
+        @BeforeEach
+        void init() {
+            indexedShelf = new BookShelf().withTitleIndex();
+            shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode, effectiveJava);
+            indexedShelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode, effectiveJava);
+        }
+
+        @Test
+        @DisplayName("finds the same books as a full scan")
+        void findsSameBooksAsScan() {
+            for (String title : asList("code", "effective java", "man-month", "c", "", "ode", "java", "CODE", "clean coder", "xyz")) {
+                assertEquals(shelf.findBooksByTitle(title), indexedShelf.findBooksByTitle(title), () -> "Mismatch for title " + title);
+            }
+        }
+
+        @Test
+        @DisplayName("applies the filter to matching books")
+        void appliesFilterToMatchingBooks() {
+            List<Book> books = indexedShelf.findBooksByTitle("code", BookPublishedYearFilter.After(2007));
+            assertEquals(singletonList(cleanCode), books);
+        }
+
+        @Test
+        @DisplayName("indexes books added before it was enabled")
+        void indexesExistingBooks() {
+            assertEquals(asList(codeComplete, cleanCode), shelf.withTitleIndex().findBooksByTitle("code"));
+        }
+
+        @Test
+        @DisplayName("only on shelves that do not store books themselves")
+        void rejectedByScannedShelves() {
+            for (BookShelf scannedShelf : asList(new ConcurrentBookShelf(), new ColumnarBookShelf())) {
+                assertThrows(UnsupportedOperationException.class, scannedShelf::withTitleIndex);
+                assertThrows(UnsupportedOperationException.class, () -> scannedShelf.keepArranged(Comparator.naturalOrder()));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("once it is no longer used")
+    class WhenDropped {
+
+        @Test
+        @DisplayName("is not kept alive by its books")
+        void isCollected() throws InterruptedException {
+            BookShelf dropped = new BookShelf();
+            dropped.add(effectiveJava);
+            WeakReference<BookShelf> reference = new WeakReference<>(dropped);
+            dropped = null;
+
+            for (int i = 0; i < 50 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+
+            assertNull(reference.get());
+            new BookShelf().add(effectiveJava);
+            assertEquals(1, effectiveJava.readingStateListeners());
+        }
+
+        @Test
+        @DisplayName("columnar shelves are not kept alive by their books either")
+        void columnarIsCollected() throws InterruptedException {
+            BookShelf dropped = new ColumnarBookShelf();
+            dropped.add(effectiveJava);
+            WeakReference<BookShelf> reference = new WeakReference<>(dropped);
+            dropped = null;
+
+            for (int i = 0; i < 50 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+
+            assertNull(reference.get());
+            effectiveJava.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+            assertTrue(effectiveJava.isProgress());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package bookstoread;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A catalog import")
+class CatalogImporterSpec {
+
+    private final Book effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+    private final Book codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+    private final Book cleanCode = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+
+    @Nested
+    @DisplayName("from a stream of books")
+    class FromStream {
+
+        @Test
+        @DisplayName("adds every book in batches")
+        void addsAllBooks() {
+            BookShelf shelf = new BookShelf();
+            CatalogImporter.Result result = new CatalogImporter(shelf, 2).importBooks(Stream.of(effectiveJava, codeComplete, cleanCode));
+
+            assertEquals(3, result.imported());
+            assertFalse(result.capacityReached());
+            assertEquals(asList(effectiveJava, codeComplete, cleanCode), shelf.books());
+        }
+
+        @Test
+        @DisplayName("stops and reports how far it got when the shelf is full")
+        void stopsWhenCapacityIsReached() {
+            BookShelf shelf = new BookShelf(25);
+            shelf.add(effectiveJava);
+            Stream<Book> books = IntStream.range(0, 100).mapToObj(i -> new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+
+            CatalogImporter.Result result = new CatalogImporter(shelf, 10).importBooks(books);
+
+            assertEquals(24, result.imported());
+            assertTrue(result.capacityReached());
+            assertEquals(25, shelf.books().size());
+        }
+
+        @Test
+        @DisplayName("does not report a full shelf when the catalog fits exactly")
+        void fillsShelfExactly() {
+            BookShelf shelf = new BookShelf(3);
+            CatalogImporter.Result result = new CatalogImporter(shelf, 3).importBooks(Stream.of(effectiveJava, codeComplete, cleanCode));
+
+            assertEquals(3, result.imported());
+            assertFalse(result.capacityReached());
+        }
+
+        @Test
+        @DisplayName("fills the room left by duplicates the shelf skips")
+        void skipsDuplicates() {
+            BookShelf shelf = new BookShelf(3).withDuplicatePolicy(DuplicatePolicy.SKIP);
+            shelf.add(effectiveJava);
+            Book copy = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+
+            CatalogImporter.Result result = new CatalogImporter(shelf, 2).importBooks(Stream.of(copy, codeComplete, effectiveJava, cleanCode));
+
+            assertEquals(2, result.imported());
+            assertFalse(result.capacityReached());
+            assertEquals(asList(effectiveJava, codeComplete, cleanCode), shelf.books());
+        }
+    }
+
+    @Nested
+    @DisplayName("from CSV")
+    class FromCsv {
+
+        @Test
+        @DisplayName("reads columns by header name, quoted fields and reading dates")
+        void readsCsv() throws IOException {
+            BookShelf shelf = new BookShelf();
+            String csv = "author,title,publishedOn,startedReadingOn,finishedReadingOn\r\n" +
+                    "Joshua Bloch,Effective Java,2008-05-08,2016-07-01,2016-07-31\r\n" +
+                    "\"McConnel, Steve\",\"Code \"\"Complete\"\"\",2004-06-09,2016-08-01,\n" +
+                    "\n" +
+                    "Robert C. Martin,Clean Code,2008-08-01,,";
+
+            CatalogImporter.Result result = new CatalogImporter(shelf).importCsv(channel(csv));
+
+            assertEquals(3, result.imported());
+            assertEquals(asList(effectiveJava, new Book("Code \"Complete\"", "McConnel, Steve", LocalDate.of(2004, Month.JUNE, 9)), cleanCode), shelf.books());
+            assertTrue(shelf.books().get(0).isRead());
+            assertTrue(shelf.books().get(1).isProgress());
+            assertThat(shelf.progress().toRead()).isEqualTo(33);
+        }
+
+        @Test
+        @DisplayName("reads catalogs larger than its buffer")
+        void readsLargeCatalog() throws IOException {
+            StringBuilder csv = new StringBuilder("title,author,publishedOn\n");
+            for (int i = 0; i < 10_000; i++) {
+                csv.append("Bücher Nummer ").append(i).append(",Autorin ").append(i % 7).append(",2001-02-03\n");
+            }
+            BookShelf shelf = new BookShelf();
+
+            CatalogImporter.Result result = new CatalogImporter(shelf).importCsv(channel(csv.toString()));
+
+            assertEquals(10_000, result.imported());
+            assertEquals("Bücher Nummer 9999", shelf.books().get(9_999).getTitle());
+        }
+
+        @Test
+        @DisplayName("shares one string between books of the same author")
+        void sharesAuthorStrings() throws IOException {
+            BookShelf shelf = new BookShelf();
+
+            new CatalogImporter(shelf).importCsv(channel("title,author,publishedOn\nEffective Java,Joshua Bloch,2008-05-08\nJava Puzzlers,Joshua Bloch,2005-07-04\n"));
+
+            assertThat(shelf.books().get(1).getAuthor()).isSameAs(shelf.books().get(0).getAuthor());
+        }
+
+        @Test
+        @DisplayName("stops sharing strings of authors it has not seen for long")
+        void boundsInternedAuthors() throws IOException {
+            StringBuilder csv = new StringBuilder("title,author,publishedOn\nEffective Java,Joshua Bloch,2008-05-08\n");
+            for (int i = 0; i < 5_000; i++) {
+                csv.append("Book ").append(i).append(",Author ").append(i).append(",2001-02-03\n");
+            }
+            csv.append("Java Puzzlers,Joshua Bloch,2005-07-04\nLast Book,Author 4999,2001-02-03\n");
+            BookShelf shelf = new BookShelf();
+
+            new CatalogImporter(shelf).importCsv(channel(csv.toString()));
+
+            List<Book> books = shelf.books();
+            assertThat(books.get(5_001).getAuthor()).isEqualTo("Joshua Bloch").isNotSameAs(books.get(0).getAuthor());
+            assertThat(books.get(5_002).getAuthor()).isSameAs(books.get(5_000).getAuthor());
+        }
+
+        @Test
+        @DisplayName("rejects a catalog without the required columns")
+        void rejectsMissingColumns() {
+            IOException exception = assertThrows(IOException.class, () -> new CatalogImporter(new BookShelf()).importCsv(channel("title,author\nA,B\n")));
+            assertThat(exception.getMessage()).contains("publishedOn");
+        }
+
+        @Test
+        @DisplayName("rejects malformed dates")
+        void rejectsMalformedDates() {
+            IOException exception = assertThrows(IOException.class, () -> new CatalogImporter(new BookShelf()).importCsv(channel("title,author,publishedOn\nA,B,yesterday\n")));
+            assertThat(exception.getMessage()).contains("record 2");
+        }
+
+        private ReadableByteChannel channel(String csv) {
+            return Channels.newChannel(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package bookstoread;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A columnar bookshelf")
+class ColumnarBookShelfSpec {
+
+    private BookShelf shelf;
+    private BookShelf columnarShelf;
+    private Book effectiveJava;
+    private Book codeComplete;
+    private Book mythicalManMonth;
+    private Book cleanCode;
+
+    @BeforeEach
+    void init() {
+        effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+        codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+        mythicalManMonth = new Book("The Mythical Man-Month", "Frederick Phillips Brooks", LocalDate.of(1975, Month.JANUARY, 1));
+        cleanCode = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+        shelf = new BookShelf();
+        columnarShelf = new ColumnarBookShelf();
+        shelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+        columnarShelf.add(effectiveJava, codeComplete, mythicalManMonth, cleanCode);
+    }
+
+    @Test
+    @DisplayName("answers queries like a bookshelf")
+    void answersQueriesLikeBookShelf() {
+        assertEquals(shelf.books(), columnarShelf.books());
+        assertEquals(shelf.arrange(), columnarShelf.arrange());
+        assertEquals(shelf.arrange(Comparator.comparing(Book::getPublishedOn)), columnarShelf.arrange(Comparator.comparing(Book::getPublishedOn)));
+        assertEquals(shelf.groupByPublicationYear(), columnarShelf.groupByPublicationYear());
+        assertEquals(shelf.groupBy(Book::getAuthor), columnarShelf.groupBy(Book::getAuthor));
+        assertEquals(shelf.booksPublishedBetween(1975, 2004), columnarShelf.booksPublishedBetween(1975, 2004));
+        assertEquals(shelf.findBooksByTitle("code"), columnarShelf.findBooksByTitle("code"));
+        assertEquals(shelf.findBooksByTitle("code", BookPublishedYearFilter.After(2007)), columnarShelf.findBooksByTitle("code", BookPublishedYearFilter.After(2007)));
+        assertEquals(shelf.findBooksByTitle("e", b -> b.getAuthor().startsWith("J")), columnarShelf.findBooksByTitle("e", b -> b.getAuthor().startsWith("J")));
+    }
+
+    @Test
+    @DisplayName("follows reading progress of the books that were added")
+    void followsReadingProgressOfAddedBooks() {
+        effectiveJava.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+        Progress progress = columnarShelf.progress();
+        assertThat(progress.completed()).isEqualTo(25);
+        assertThat(progress.inProgress()).isEqualTo(25);
+        assertThat(progress.toRead()).isEqualTo(50);
+        assertTrue(columnarShelf.books().get(1).isRead());
+    }
+
+    @Test
+    @DisplayName("writes reading progress of its views through to the shelf")
+    void writesViewProgressThrough() {
+        Book view = columnarShelf.books().get(2);
+        view.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+
+        assertEquals(mythicalManMonth, view);
+        assertThat(columnarShelf.progress().inProgress()).isEqualTo(25);
+        assertTrue(columnarShelf.books().get(2).isProgress());
+    }
+
+    @Test
+    @DisplayName("returns a snapshot that is not affected by later adds and removals")
+    void returnsSnapshot() {
+        List<Book> books = columnarShelf.books();
+        columnarShelf.remove(codeComplete);
+        columnarShelf.add(codeComplete);
+
+        assertEquals(asList(effectiveJava, codeComplete, mythicalManMonth, cleanCode), books);
+        assertEquals(asList(effectiveJava, mythicalManMonth, cleanCode, codeComplete), columnarShelf.books());
+    }
+
+    @Test
+    @DisplayName("keeps views attached to their book when removals move it")
+    void keepsViewsAttachedAcrossRemovals() {
+        Book view = columnarShelf.books().get(2);
+        columnarShelf.remove(effectiveJava);
+
+        view.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+
+        assertTrue(columnarShelf.books().get(1).isProgress());
+        assertFalse(columnarShelf.books().get(0).isProgress());
+        assertThat(columnarShelf.progress().inProgress()).isEqualTo(33);
+    }
+
+    @Test
+    @DisplayName("shows the current reading progress in views of an old snapshot")
+    void showsCurrentProgressInOldSnapshot() {
+        List<Book> books = columnarShelf.books();
+        columnarShelf.remove(effectiveJava);
+        for (int i = 0; i < 20; i++) {
+            columnarShelf.add(new Book("Book " + i, "Author", LocalDate.of(1990, Month.JANUARY, 1)));
+        }
+
+        cleanCode.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+
+        assertTrue(books.get(3).isProgress());
+        assertFalse(books.get(2).isProgress());
+        assertTrue(columnarShelf.books().get(2).isProgress());
+    }
+
+    @Test
+    @DisplayName("reports its capacity like a bookshelf")
+    void throwsExceptionWhenCapacityIsReached() {
+        BookShelf bookShelf = new ColumnarBookShelf(2);
+        bookShelf.add(effectiveJava, codeComplete);
+        BookShelfCapacityReached exception = assertThrows(BookShelfCapacityReached.class, () -> bookShelf.add(mythicalManMonth));
+        assertEquals("BookShelf capacity of 2 is reached. You can't add more books.", exception.getMessage());
+        List<Book> books = bookShelf.books();
+        assertThrows(UnsupportedOperationException.class, () -> books.add(mythicalManMonth));
+    }
+
+    @Test
+    @DisplayName("grows past its initial column size")
+    void growsColumns() {
+        BookShelf bookShelf = new ColumnarBookShelf();
+        for (int i = 0; i < 100; i++) {
+            bookShelf.add(new Book("Book " + i, "Author " + (i % 3), LocalDate.of(1950 + i, Month.JANUARY, 1)));
+        }
+        assertEquals(100, bookShelf.books().size());
+        assertEquals("Book 99", bookShelf.books().get(99).getTitle());
+        assertThat(bookShelf.groupBy(Book::getAuthor)).hasSize(3);
+    }
+}
@@ -0,0 +1,113 @@
+package bookstoread;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A concurrent bookshelf")
+class ConcurrentBookShelfSpec {
+
+    private Book effectiveJava;
+    private Book codeComplete;
+    private Book mythicalManMonth;
+
+    @BeforeEach
+    void init() {
+        effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+        codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+        mythicalManMonth = new Book("The Mythical Man-Month", "Frederick Phillips Brooks", LocalDate.of(1975, Month.JANUARY, 1));
+    }
+
+    @Test
+    @DisplayName("behaves like a bookshelf for a single writer")
+    void behavesLikeBookShelf() {
+        BookShelf shelf = new ConcurrentBookShelf();
+        shelf.add(effectiveJava, codeComplete, mythicalManMonth);
+        codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+        codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+
+        assertEquals(asList(effectiveJava, codeComplete, mythicalManMonth), shelf.books());
+        assertEquals(asList(codeComplete, effectiveJava, mythicalManMonth), shelf.arrange());
+        assertEquals(asList(codeComplete), shelf.findBooksByTitle("code"));
+        assertThat(shelf.progress().completed()).isEqualTo(33);
+        assertThat(shelf.groupBy(Book::getAuthor)).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("enforces its capacity exactly when many threads add books")
+    void enforcesCapacityUnderContention() throws Exception {
+        int capacity = 1000;
+        BookShelf shelf = new ConcurrentBookShelf(capacity);
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < 8; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        try {
+                            shelf.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+                        } catch (BookShelfCapacityReached e) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                shelf.arrange();
+                shelf.progress();
+                writer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(capacity, shelf.books().size());
+        assertEquals(1000, rejected.get());
+    }
+
+    @Test
+    @DisplayName("returns a snapshot that is not affected by later adds")
+    void returnsSnapshot() {
+        BookShelf shelf = new ConcurrentBookShelf();
+        shelf.add(effectiveJava);
+        List<Book> books = shelf.books();
+        shelf.add(codeComplete);
+
+        assertEquals(asList(effectiveJava), books);
+        assertThrows(UnsupportedOperationException.class, () -> books.add(mythicalManMonth));
+    }
+
+    @Test
+    @DisplayName("copies its books only once per change")
+    void sharesSnapshotUntilChanged() {
+        BookShelf shelf = new ConcurrentBookShelf();
+        shelf.add(effectiveJava, codeComplete);
+        List<Book> books = shelf.books();
+
+        assertSame(books, shelf.books());
+        shelf.remove(effectiveJava);
+        assertEquals(asList(codeComplete), shelf.books());
+        assertEquals(asList(effectiveJava, codeComplete), books);
+    }
+
+    @Test
+    @DisplayName("reports its capacity like a bookshelf")
+    void throwsExceptionWhenCapacityIsReached() {
+        BookShelf shelf = new ConcurrentBookShelf(2);
+        shelf.add(effectiveJava, codeComplete);
+        BookShelfCapacityReached exception = assertThrows(BookShelfCapacityReached.class, () -> shelf.add(mythicalManMonth));
+        assertEquals("BookShelf capacity of 2 is reached. You can't add more books.", exception.getMessage());
+    }
+}
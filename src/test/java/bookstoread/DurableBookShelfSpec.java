@@ -0,0 +1,256 @@
+package bookstoread;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A durable bookshelf")
+class DurableBookShelfSpec {
+
+    private Path directory;
+    private Book effectiveJava;
+    private Book codeComplete;
+    private Book cleanCode;
+
+    @BeforeEach
+    void init() throws IOException {
+        directory = Files.createTempDirectory("bookshelf");
+        effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+        codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+        cleanCode = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+    }
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("restores adds, removals and reading dates when reopened")
+    void restoresChanges() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory, 5)) {
+            durable.add(effectiveJava, codeComplete);
+            durable.add(cleanCode);
+            codeComplete.startedReadingOn(LocalDate.of(2016, Month.JULY, 1));
+            codeComplete.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31));
+            assertEquals(1, durable.remove(new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8))));
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            BookShelf shelf = reopened.shelf();
+            assertEquals(asList(codeComplete, cleanCode), shelf.books());
+            assertTrue(shelf.books().get(0).isRead());
+            assertEquals(Book.toDay(LocalDate.of(2016, Month.JULY, 31)), shelf.books().get(0).finishedDay());
+            assertEquals(5, shelf.capacity());
+            assertThat(shelf.progress().completed()).isEqualTo(50);
+        }
+    }
+
+    @Test
+    @DisplayName("restores books dated at the ends of the date range")
+    void restoresFarDates() throws IOException {
+        Book first = new Book("First", "Anonymous", LocalDate.MIN);
+        Book last = new Book("Last", "Anonymous", LocalDate.MAX);
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(first, effectiveJava);
+            durable.compact();
+            durable.add(last);
+            last.startedReadingOn(LocalDate.MIN);
+            last.finishedReadingOn(LocalDate.MAX);
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            BookShelf shelf = reopened.shelf();
+            assertEquals(asList(first, effectiveJava, last), shelf.books());
+            assertEquals(LocalDate.MIN, shelf.books().get(0).getPublishedOn());
+            assertEquals(LocalDate.MAX, shelf.books().get(2).getPublishedOn());
+            assertTrue(shelf.books().get(2).isRead());
+        }
+    }
+
+    @Test
+    @DisplayName("recovers everything synced before a crash")
+    void recoversAfterCrash() throws IOException {
+        DurableBookShelf crashed = DurableBookShelf.open(directory);
+        crashed.add(effectiveJava, codeComplete);
+        effectiveJava.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+        crashed.sync();
+
+        try (DurableBookShelf recovered = DurableBookShelf.open(directory)) {
+            assertEquals(asList(effectiveJava, codeComplete), recovered.shelf().books());
+            assertTrue(recovered.shelf().books().get(0).isProgress());
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    @DisplayName("replays the log up to a torn or corrupt record")
+    void stopsAtTornRecord() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(effectiveJava);
+            durable.add(codeComplete);
+        }
+        Path log = directory.resolve("log.0");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(log, bytes);
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            assertEquals(asList(effectiveJava), reopened.shelf().books());
+        }
+    }
+
+    @Test
+    @DisplayName("compacts its history into a snapshot and keeps logging after it")
+    void compacts() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(effectiveJava, codeComplete);
+            durable.remove(codeComplete);
+            durable.compact();
+            durable.add(cleanCode);
+            effectiveJava.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.map(file -> file.getFileName().toString()).collect(Collectors.toList()))
+                        .containsOnly("snapshot.1", "log.1");
+            }
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            List<Book> books = reopened.shelf().books();
+            assertEquals(asList(effectiveJava, cleanCode), books);
+            assertTrue(books.get(0).isProgress());
+            reopened.compact();
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            assertEquals(asList(effectiveJava, cleanCode), reopened.shelf().books());
+        }
+    }
+
+    @Test
+    @DisplayName("compacts while another thread adds books and changes their reading dates")
+    void compactsWhileWriting() throws Exception {
+        List<Book> added = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            added.add(new Book("Book " + i, "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            Thread writer = new Thread(() -> {
+                try {
+                    for (Book book : added) {
+                        durable.add(book);
+                        book.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            writer.start();
+            do {
+                durable.compact();
+            } while (writer.isAlive());
+            writer.join();
+        }
+        assertNull(failure.get());
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            List<Book> books = reopened.shelf().books();
+            assertEquals(added, books);
+            for (Book book : books) {
+                assertTrue(book.isProgress(), book::getTitle);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("does not let books be added or removed on its shelf directly")
+    void guardsShelf() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(effectiveJava);
+
+            assertThrows(UnsupportedOperationException.class, () -> durable.shelf().add(codeComplete));
+            assertThrows(UnsupportedOperationException.class, () -> durable.shelf().remove(effectiveJava));
+            assertThrows(UnsupportedOperationException.class, () -> durable.shelf().removeIf(book -> true));
+            assertEquals(asList(effectiveJava), durable.shelf().books());
+        }
+    }
+
+    @Test
+    @DisplayName("replays the same book added twice as one book")
+    void replaysSameBook() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(effectiveJava, effectiveJava);
+            effectiveJava.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            List<Book> books = reopened.shelf().books();
+            assertEquals(2, books.size());
+            assertSame(books.get(0), books.get(1));
+            assertTrue(books.get(0).isProgress());
+        }
+    }
+
+    @Test
+    @DisplayName("keeps a book added twice one book across a compaction")
+    void compactsSameBook() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory)) {
+            durable.add(effectiveJava, effectiveJava, codeComplete, codeComplete);
+            durable.compact();
+            effectiveJava.startedReadingOn(LocalDate.of(2016, Month.AUGUST, 1));
+            durable.remove(codeComplete);
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            List<Book> books = reopened.shelf().books();
+            assertEquals(asList(effectiveJava, effectiveJava), books);
+            assertSame(books.get(0), books.get(1));
+            assertThat(reopened.shelf().progress().inProgress()).isEqualTo(100);
+            reopened.compact();
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            List<Book> books = reopened.shelf().books();
+            assertSame(books.get(0), books.get(1));
+            assertTrue(books.get(0).isProgress());
+        }
+    }
+
+    @Test
+    @DisplayName("logs only the books the shelf took")
+    void logsTakenBooks() throws IOException {
+        try (DurableBookShelf durable = DurableBookShelf.open(directory, 1)) {
+            assertThrows(BookShelfCapacityReached.class, () -> durable.add(effectiveJava, codeComplete));
+        }
+
+        try (DurableBookShelf reopened = DurableBookShelf.open(directory)) {
+            assertEquals(asList(effectiveJava), reopened.shelf().books());
+        }
+    }
+}
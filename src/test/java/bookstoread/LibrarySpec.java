@@ -0,0 +1,84 @@
+package bookstoread;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("A library")
+class LibrarySpec {
+
+    private Library library;
+    private BookShelf shelf;
+    private List<Book> books;
+
+    @BeforeEach
+    void init() {
+        library = new Library(4);
+        shelf = new BookShelf();
+        books = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            books.add(new Book("Book " + (i * 7919 % 200), "Author " + i % 9, LocalDate.of(1990 + i % 25, Month.JANUARY, 1)));
+        }
+        Book[] all = books.toArray(new Book[0]);
+        library.add(all);
+        shelf.add(all);
+    }
+
+    @Test
+    @DisplayName("spreads its books over all shards")
+    void spreadsBooksOverShards() {
+        library.shards().forEach(shard -> assertFalse(shard.books().isEmpty()));
+        assertThat(library.books()).hasSameSizeAs(books).containsAll(books);
+    }
+
+    @Test
+    @DisplayName("arranges books like a single shelf")
+    void arrangesLikeShelf() {
+        assertEquals(shelf.arrange(), library.arrange());
+        Comparator<Book> byYear = Comparator.comparing(Book::getPublishedOn).thenComparing(Book::getTitle);
+        assertEquals(shelf.arrange(byYear), library.arrange(byYear));
+    }
+
+    @Test
+    @DisplayName("groups and finds books like a single shelf")
+    void groupsAndFindsLikeShelf() {
+        Map<String, List<Book>> byAuthor = library.groupBy(Book::getAuthor);
+        assertEquals(shelf.groupBy(Book::getAuthor).keySet(), byAuthor.keySet());
+        byAuthor.forEach((author, books) -> assertThat(books).hasSameElementsAs(shelf.groupBy(Book::getAuthor).get(author)));
+        assertThat(library.findBooksByTitle("book 1")).hasSameElementsAs(shelf.findBooksByTitle("Book 1".toLowerCase()));
+    }
+
+    @Test
+    @DisplayName("sums the progress of its shards")
+    void sumsProgress() {
+        books.subList(0, 50).forEach(book -> book.startedReadingOn(LocalDate.of(2016, Month.JULY, 1)));
+        books.subList(0, 20).forEach(book -> book.finishedReadingOn(LocalDate.of(2016, Month.JULY, 31)));
+
+        Progress progress = library.progress();
+        assertThat(progress.completed()).isEqualTo(10);
+        assertThat(progress.inProgress()).isEqualTo(15);
+        assertThat(progress.toRead()).isEqualTo(75);
+    }
+
+    @Test
+    @DisplayName("enforces the capacity of each shard")
+    void enforcesShardCapacity() {
+        Library library = new Library(asList(new BookShelf(1), new BookShelf(1)), book -> book.getTitle().startsWith("A") ? 0 : 1);
+        library.add(new Book("A Book", "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+
+        assertThrows(BookShelfCapacityReached.class, () -> library.add(new Book("Another Book", "Author", LocalDate.of(2000, Month.JANUARY, 1))));
+        library.add(new Book("The Book", "Author", LocalDate.of(2000, Month.JANUARY, 1)));
+        assertEquals(2, library.books().size());
+    }
+}
@@ -0,0 +1,145 @@
+package bookstoread;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.Month;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Shelf metrics")
+class ShelfMetricsSpec {
+
+    private final Book effectiveJava = new Book("Effective Java", "Joshua Bloch", LocalDate.of(2008, Month.MAY, 8));
+    private final Book codeComplete = new Book("Code Complete", "Steve McConnel", LocalDate.of(2004, Month.JUNE, 9));
+    private final Book cleanCode = new Book("Clean Code", "Robert C. Martin", LocalDate.of(2008, Month.AUGUST, 1));
+
+    @Nested
+    @DisplayName("latency histogram")
+    class Histogram {
+
+        @Test
+        @DisplayName("puts every latency in a bucket that holds it")
+        void bucketsHoldTheirValues() {
+            for (long nanos : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+                int bucket = LatencyHistogram.bucket(nanos);
+                assertThat(LatencyHistogram.highestValue(bucket)).isGreaterThanOrEqualTo(nanos);
+                assertThat(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < nanos).isTrue();
+            }
+        }
+
+        @Test
+        @DisplayName("reports percentiles within an eighth of the recorded latency")
+        void reportsPercentiles() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long nanos = 1; nanos <= 1000; nanos++) {
+                histogram.record(nanos * 1000);
+            }
+
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            assertEquals(1000, snapshot.count());
+            assertEquals(1_000_000, snapshot.maxNanos());
+            assertEquals(500_500, snapshot.meanNanos(), 0.001);
+            assertThat(snapshot.percentileNanos(50)).isBetween(500_000L, 562_500L);
+            assertThat(snapshot.percentileNanos(99)).isBetween(990_000L, 1_000_000L);
+            assertEquals(1_000_000, snapshot.percentileNanos(100));
+            assertThrows(IllegalArgumentException.class, () -> snapshot.percentileNanos(101));
+        }
+    }
+
+    @Nested
+    @DisplayName("attached to a shelf")
+    class OnShelf {
+
+        @Test
+        @DisplayName("time each shelf operation")
+        void timeOperations() {
+            ShelfMetrics metrics = new ShelfMetrics();
+            BookShelf shelf = new BookShelf().withMetrics(metrics);
+
+            shelf.add(effectiveJava, codeComplete);
+            shelf.add(cleanCode);
+            shelf.arrange();
+            shelf.groupBy(Book::getAuthor);
+            shelf.progress();
+            shelf.findBooksByTitle("code");
+
+            assertEquals(2, metrics.snapshot(ShelfMetrics.Operation.ADD).count());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.ARRANGE).count());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.GROUP_BY).count());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.PROGRESS).count());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.FIND_BOOKS_BY_TITLE).count());
+            assertEquals(0, metrics.snapshot(ShelfMetrics.Operation.REMOVE).count());
+        }
+
+        @Test
+        @DisplayName("count refused adds as failures and capacity reached")
+        void countCapacityReached() {
+            ShelfMetrics metrics = new ShelfMetrics();
+            BookShelf shelf = new BookShelf(1).withMetrics(metrics);
+            shelf.add(effectiveJava);
+
+            assertThrows(BookShelfCapacityReached.class, () -> shelf.add(codeComplete));
+
+            assertEquals(1, metrics.capacityReached());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.ADD).failures());
+            assertEquals(2, metrics.snapshot(ShelfMetrics.Operation.ADD).count());
+        }
+
+        @Test
+        @DisplayName("time the operations of shelves that store books themselves")
+        void timeOtherShelves() {
+            ShelfMetrics metrics = new ShelfMetrics();
+            BookShelf shelf = new ColumnarBookShelf(1).withMetrics(metrics);
+            shelf.add(effectiveJava);
+
+            assertThrows(BookShelfCapacityReached.class, () -> shelf.add(codeComplete));
+            assertThat(shelf.findBooksByTitle("java")).containsExactly(effectiveJava);
+
+            assertEquals(2, metrics.snapshot(ShelfMetrics.Operation.ADD).count());
+            assertEquals(1, metrics.capacityReached());
+            assertEquals(1, metrics.snapshot(ShelfMetrics.Operation.FIND_BOOKS_BY_TITLE).count());
+        }
+    }
+
+    @Test
+    @DisplayName("time instrumented filters by name")
+    void timeFilters() {
+        ShelfMetrics metrics = new ShelfMetrics();
+        BookShelf shelf = new BookShelf();
+        shelf.add(effectiveJava, codeComplete, cleanCode);
+
+        assertThat(shelf.findBooksByTitle("code", metrics.instrument("recent", BookPublishedYearFilter.After(2007))))
+                .containsExactly(cleanCode);
+
+        assertEquals(2, metrics.filterSnapshot("recent").count());
+        assertNull(metrics.filterSnapshot("unknown"));
+    }
+
+    @Test
+    @DisplayName("expose operations and filters as MXBeans")
+    void registerMBeans() throws Exception {
+        ShelfMetrics metrics = new ShelfMetrics();
+        metrics.instrument("recent", BookPublishedYearFilter.After(2007));
+        new BookShelf().withMetrics(metrics).arrange();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        metrics.registerMBeans("spec shelf");
+        try {
+            assertEquals(ShelfMetrics.Operation.values().length + 2, metrics.registeredMBeans().size());
+            ObjectName arrange = new ObjectName("bookstoread:type=ShelfMetrics,name=\"spec shelf\",operation=arrange");
+            assertEquals(1L, server.getAttribute(arrange, "Count"));
+            assertTrue(server.isRegistered(new ObjectName("bookstoread:type=ShelfMetrics,name=\"spec shelf\",filter=\"recent\"")));
+        } finally {
+            metrics.unregisterMBeans();
+        }
+        assertThat(server.queryNames(new ObjectName("bookstoread:type=ShelfMetrics,name=\"spec shelf\",*"), null)).isEmpty();
+    }
+}